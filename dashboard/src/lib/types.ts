@@ -25,6 +25,8 @@ export interface DlqSample {
   reason: string
   original: string
   tenantId: string
+  // Set for binary envelopes, whose original is Base64-encoded
+  contentType?: string
 }
 
 export interface KafkaLagData {
@@ -9,4 +9,13 @@ echo "Creating Kafka topics..."
 /opt/kafka/bin/kafka-topics.sh --bootstrap-server kafka:9092 --create --if-not-exists \
   --topic events.dlq --partitions 3 --replication-factor 1
 
+# Persisted events published through the processor's outbox, keyed by tenant
+/opt/kafka/bin/kafka-topics.sh --bootstrap-server kafka:9092 --create --if-not-exists \
+  --topic events.processed --partitions 6 --replication-factor 1
+
+# Processor partition-state checkpoints, one key per consumer group and source partition
+/opt/kafka/bin/kafka-topics.sh --bootstrap-server kafka:9092 --create --if-not-exists \
+  --topic events.processor-state --partitions 6 --replication-factor 1 \
+  --config cleanup.policy=compact
+
 echo "Topics created successfully."
@@ -1,16 +1,32 @@
 package com.anishk05.processor.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.db.AggregationResult;
 import com.anishk05.processor.db.EventEntity;
-import com.anishk05.processor.db.EventRepository;
+import com.anishk05.processor.db.ShardRouter;
+import com.anishk05.processor.db.TenantShardMover;
+import com.anishk05.processor.kafka.TenantFairScheduler;
 import com.anishk05.processor.observability.LagService;
+import com.anishk05.processor.service.AggregationDefinition;
+import com.anishk05.processor.service.ContinuousAggregationService;
+import com.anishk05.processor.service.EventExportService;
+import com.anishk05.processor.service.EventSketchService;
+import com.anishk05.processor.service.ShardedEventQueries;
+import com.anishk05.processor.service.ExportFormat;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -20,8 +36,15 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class AdminController {
 
-    private final EventRepository eventRepository;
+    private final ShardedEventQueries eventQueries;
+    private final ShardRouter shardRouter;
+    private final TenantShardMover tenantShardMover;
     private final LagService lagService;
+    private final TenantFairScheduler tenantFairScheduler;
+    private final EventExportService eventExportService;
+    private final ContinuousAggregationService aggregationService;
+    private final EventSketchService sketchService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/overview")
     public ResponseEntity<OverviewResponse> getOverview() {
@@ -29,18 +52,17 @@ public class AdminController {
         LocalDateTime fiveMinutesAgo = now.minusMinutes(5);
         LocalDateTime thirtyMinutesAgo = now.minusMinutes(30);
 
-        long eventsLast5Minutes = eventRepository.countEventsSince(fiveMinutesAgo);
-        long eventsLast30Minutes = eventRepository.countEventsSince(thirtyMinutesAgo);
+        long eventsLast5Minutes = eventQueries.countEventsSince(fiveMinutesAgo);
+        long eventsLast30Minutes = eventQueries.countEventsSince(thirtyMinutesAgo);
         
-        List<Object[]> topEventTypes = eventRepository.countEventTypesSince(now.minusHours(24));
+        List<Object[]> topEventTypes = eventQueries.countEventTypesSince(now.minusHours(24));
         String topEventType = "none";
         if (!topEventTypes.isEmpty()) {
             topEventType = (String) topEventTypes.get(0)[0];
         }
 
         // Fetch recent events
-        List<EventEntity> recentEventEntities = eventRepository.findRecentEventsByReceivedAt(PageRequest.of(0, 20));
-        List<EventDto> recentEvents = recentEventEntities.stream()
+        List<EventDto> recentEvents = eventQueries.findRecentEvents(20).stream()
                 .map(this::toEventDto)
                 .toList();
 
@@ -60,7 +82,7 @@ public class AdminController {
             @RequestParam(defaultValue = "1440") int sinceMinutes) {
         
         LocalDateTime since = LocalDateTime.now().minusMinutes(sinceMinutes);
-        List<Object[]> results = eventRepository.countEventTypesSince(since);
+        List<Object[]> results = eventQueries.countEventTypesSince(since);
         
         List<EventTypeCount> counts = results.stream()
                 .map(row -> new EventTypeCount((String) row[0], (Long) row[1]))
@@ -74,7 +96,7 @@ public class AdminController {
             @RequestParam String tenant,
             @RequestParam String eventId) {
         
-        Optional<EventEntity> event = eventRepository.findByTenantIdAndEventId(tenant, eventId);
+        Optional<ShardedEventQueries.ResolvedEvent> event = eventQueries.findByTenantIdAndEventId(tenant, eventId);
         
         if (event.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -88,7 +110,8 @@ public class AdminController {
             @RequestParam String tenant,
             @RequestParam String idempotencyKey) {
         
-        Optional<EventEntity> event = eventRepository.findByTenantIdAndIdempotencyKey(tenant, idempotencyKey);
+        Optional<ShardedEventQueries.ResolvedEvent> event =
+                eventQueries.findByTenantIdAndIdempotencyKey(tenant, idempotencyKey);
         
         if (event.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -97,6 +120,47 @@ public class AdminController {
         return ResponseEntity.ok(toEventDto(event.get()));
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportEvents(
+            @RequestParam String tenant,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromParam(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Rows are split between two shards until the move completes
+        if (shardRouter.isMoving(tenant)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        // Bounded number of concurrent exports so they cannot drain the connection pool. The
+        // slot is taken inside the body, which may never run; a request that loses the race
+        // for the last slot fails its stream instead
+        if (!eventExportService.hasFreeSlot()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+
+        StreamingResponseBody body = out -> eventExportService.exportInSlot(tenant, from, to, exportFormat, gzip, out);
+
+        String filename = "events-" + tenant + "." + exportFormat.getExtension();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, exportFormat.getContentType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/dlq/sample")
     public ResponseEntity<List<DlqSample>> getDlqSample(@RequestParam(defaultValue = "20") int limit) {
         // For MVP, we'll return a placeholder or consume from Kafka topic
@@ -124,6 +188,142 @@ public class AdminController {
         }
     }
 
+    @GetMapping("/storage/savings")
+    public ResponseEntity<List<StorageSavings>> getStorageSavings() {
+        List<StorageSavings> savings = eventQueries.summarizeBlobsByTenant().stream()
+                .map(row -> {
+                    long originalBytes = ((Number) row[2]).longValue();
+                    long storedBytes = ((Number) row[3]).longValue();
+                    return StorageSavings.builder()
+                            .tenantId((String) row[0])
+                            .offloadedEvents((Long) row[1])
+                            .originalBytes(originalBytes)
+                            .storedBytes(storedBytes)
+                            .savedBytes(originalBytes - storedBytes)
+                            .compressionRatio(storedBytes == 0 ? 0 : (double) originalBytes / storedBytes)
+                            .build();
+                })
+                .toList();
+
+        return ResponseEntity.ok(savings);
+    }
+
+    @GetMapping("/tenants/scheduling")
+    public ResponseEntity<List<TenantSchedulingStats>> getTenantScheduling() {
+        return ResponseEntity.ok(tenantFairScheduler.getStats());
+    }
+
+    @PostMapping("/aggregations")
+    public ResponseEntity<?> registerAggregation(@RequestBody AggregationDefinition definition) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(aggregationService.register(definition));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/aggregations")
+    public ResponseEntity<List<AggregationDefinition>> listAggregations() {
+        return ResponseEntity.ok(aggregationService.list());
+    }
+
+    @DeleteMapping("/aggregations/{name}")
+    public ResponseEntity<Void> removeAggregation(@PathVariable String name) {
+        return aggregationService.remove(name)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    // Finalized windows only; results of removed aggregations stay queryable
+    @GetMapping("/aggregations/{name}/results")
+    public ResponseEntity<List<AggregationResultDto>> getAggregationResults(
+            @PathVariable String name,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<AggregationResultDto> results = aggregationService.results(name, from, to).stream()
+                .map(this::toAggregationResultDto)
+                .toList();
+        return ResponseEntity.ok(results);
+    }
+
+    @GetMapping("/sketches/distinct")
+    public ResponseEntity<?> getDistinctCount(
+            @RequestParam String tenant,
+            @RequestParam String field,
+            @RequestParam(required = false) String eventType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            long distinct = sketchService.distinctCount(tenant, field, eventType, from, to);
+            return ResponseEntity.ok(DistinctCountDto.builder()
+                    .tenant(tenant)
+                    .field(field)
+                    .eventType(eventType)
+                    .from(from.toString())
+                    .to(to.toString())
+                    .distinct(distinct)
+                    .build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/sketches/top")
+    public ResponseEntity<?> getHeavyHitters(
+            @RequestParam String tenant,
+            @RequestParam String field,
+            @RequestParam(required = false) String eventType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "10") int k) {
+
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            List<HeavyHitterDto> top = sketchService.heavyHitters(tenant, field, eventType, from, to, k).stream()
+                    .map(counter -> HeavyHitterDto.builder()
+                            .value(counter.getItem())
+                            .count(counter.getCount())
+                            .error(counter.getError())
+                            .build())
+                    .toList();
+            return ResponseEntity.ok(top);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/shards")
+    public ResponseEntity<ShardOverview> getShards() {
+        return ResponseEntity.ok(ShardOverview.builder()
+                .shards(shardRouter.shardCount())
+                .tenants(shardRouter.placements())
+                .moves(tenantShardMover.getMoves())
+                .build());
+    }
+
+    @PostMapping("/shards/tenants/{tenant}/move")
+    public ResponseEntity<?> moveTenant(@PathVariable String tenant, @RequestParam int to) {
+        try {
+            return ResponseEntity.accepted().body(tenantShardMover.move(tenant, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/health")
     public ResponseEntity<HealthResponse> health() {
         return ResponseEntity.ok(HealthResponse.builder()
@@ -133,7 +333,27 @@ public class AdminController {
                 .build());
     }
 
-    private EventDto toEventDto(EventEntity entity) {
+    private AggregationResultDto toAggregationResultDto(AggregationResult result) {
+        Map<String, Object> group;
+        try {
+            group = objectMapper.readValue(result.getGroupKey(), new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            group = Map.of();
+        }
+        return AggregationResultDto.builder()
+                .windowStart(result.getWindowStart().toString())
+                .windowEnd(result.getWindowEnd().toString())
+                .group(group)
+                .aggregate(result.getAggregate())
+                .value(result.getValue())
+                .build();
+    }
+
+    private EventDto toEventDto(ShardedEventQueries.ResolvedEvent event) {
+        return toEventDto(event.getEntity(), event.getPayload());
+    }
+
+    private EventDto toEventDto(EventEntity entity, Map<String, Object> payload) {
         return EventDto.builder()
                 .id(entity.getId().toString())
                 .tenantId(entity.getTenantId())
@@ -144,7 +364,7 @@ public class AdminController {
                 .occurredAt(entity.getOccurredAt().toString())
                 .receivedAt(entity.getReceivedAt().toString())
                 .processedAt(entity.getProcessedAt().toString())
-                .payload(entity.getPayload())
+                .payload(payload)
                 .status(entity.getStatus())
                 .build();
     }
@@ -1,5 +1,6 @@
 package com.anishk05.processor.api;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,8 +12,13 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class DlqSample {
+    // Read from the snake_case DlqMessage on events.dlq, served camelCase to the dashboard
+    @JsonAlias("failed_at")
     private String failedAt;
     private String reason;
     private String original;
+    @JsonAlias("tenant_id")
     private String tenantId;
+    @JsonAlias("content_type")
+    private String contentType;
 }
@@ -1,5 +1,6 @@
 package com.anishk05.processor.api;
 
+import com.anishk05.processor.db.ShardRouter;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -72,3 +73,67 @@ class HealthResponse {
 }
 
 
+
+// Storage savings from payload offloading, per tenant
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+class StorageSavings {
+    private String tenantId;
+    private long offloadedEvents;
+    private long originalBytes;
+    private long storedBytes;
+    private long savedBytes;
+    private double compressionRatio;
+}
+
+// Aggregation Result
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+class AggregationResultDto {
+    private String windowStart;
+    private String windowEnd;
+    private Map<String, Object> group;
+    private String aggregate;
+    private double value;
+}
+
+// Distinct Count Estimate
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+class DistinctCountDto {
+    private String tenant;
+    private String field;
+    private String eventType;
+    private String from;
+    private String to;
+    private long distinct;
+}
+
+// Heavy Hitter
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+class HeavyHitterDto {
+    private String value;
+    // Upper bound; the true count is at least count - error
+    private long count;
+    private long error;
+}
+
+// Shard layout
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+class ShardOverview {
+    private int shards;
+    private Map<String, ShardRouter.TenantPlacement> tenants;
+    private List<TenantMoveStatus> moves;
+}
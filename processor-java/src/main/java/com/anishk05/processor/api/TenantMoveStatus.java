@@ -0,0 +1,24 @@
+package com.anishk05.processor.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Progress of moving a tenant's events to another shard
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantMoveStatus {
+    private String tenantId;
+    private int fromShard;
+    private int toShard;
+    // waiting_for_writers, copying, draining_outbox, deleting, done or failed
+    private String phase;
+    private long copied;
+    private long deleted;
+    private String startedAt;
+    private String updatedAt;
+    private String error;
+}
@@ -0,0 +1,22 @@
+package com.anishk05.processor.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Per-tenant scheduler stats
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TenantSchedulingStats {
+    private String tenantId;
+    private int weight;
+    private int maxConcurrency;
+    private long queueDepth;
+    private long inFlight;
+    private long processed;
+    private double meanLatencyMs;
+    private double maxLatencyMs;
+}
@@ -0,0 +1,37 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Limits for the in-memory continuous aggregation stage.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.aggregation")
+public class AggregationProperties {
+
+    private boolean enabled = true;
+
+    // How often finalized windows are flushed to aggregation_results
+    private long flushIntervalMs = 1000;
+
+    // Used when a definition does not set allowed_lateness_seconds
+    private long defaultAllowedLatenessSeconds = 30;
+
+    // A partition without events for this long has its watermark follow the wall clock minus
+    // this, so idle windows still close
+    private long idleTimeoutMs = 60000;
+
+    // Bounds hot-path work for sliding windows (size / slide)
+    private int maxWindowsPerEvent = 60;
+
+    // Open window/group combinations per definition; further groups are dropped and counted
+    private int maxOpenGroups = 100000;
+
+    private int maxDefinitions = 50;
+
+    // How often each replica reloads aggregation_definitions to follow registrations made elsewhere
+    private long definitionRefreshMs = 5000;
+}
@@ -0,0 +1,23 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bulk export limits. Every running export holds one pooled connection,
+ * so max-concurrent must stay well below the Hikari pool size.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.export")
+public class ExportProperties {
+
+    private int maxConcurrent = 2;
+
+    // Rows pulled per round trip from the server-side cursor
+    private int fetchSize = 1000;
+
+    // 0 disables the per-export row rate limit
+    private int maxRowsPerSecond = 20000;
+}
@@ -0,0 +1,49 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tenant-fair scheduling settings for the raw event consumer.
+ * Weights and concurrency caps fall back to the defaults for tenants that are not listed.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.fairness")
+public class FairnessProperties {
+
+    private boolean enabled = true;
+
+    // Worker threads shared by all listener threads
+    private int workers = 4;
+
+    // Records a tenant with weight 1 may dispatch per deficit round-robin round
+    private int quantum = 10;
+
+    private int defaultWeight = 1;
+
+    // Max records of a weight-1 tenant in flight per poll batch; scaled by weight unless
+    // the tenant has an explicit cap (1 together with weight 1 keeps per-tenant order)
+    private int defaultMaxConcurrency = 1;
+
+    private Map<String, Integer> weights = new HashMap<>();
+
+    private Map<String, Integer> maxConcurrency = new HashMap<>();
+
+    public int weightFor(String tenantId) {
+        return Math.max(1, weights.getOrDefault(tenantId, defaultWeight));
+    }
+
+    public int maxConcurrencyFor(String tenantId) {
+        Integer cap = maxConcurrency.get(tenantId);
+        if (cap != null) {
+            return Math.max(1, cap);
+        }
+        // A tenant entitled to twice the share needs twice the slots to actually get it
+        return Math.max(1, defaultMaxConcurrency) * weightFor(tenantId);
+    }
+}
@@ -0,0 +1,47 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Adaptive backpressure settings for the raw event consumer.
+ * The effective batch size follows AIMD; the listener is paused when the database is saturated.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.flow-control")
+public class FlowControlProperties {
+
+    private boolean enabled = true;
+
+    // How often database health is sampled
+    private long intervalMs = 500;
+
+    private int minBatchSize = 5;
+
+    // Should not exceed spring.kafka.consumer.max-poll-records
+    private int maxBatchSize = 100;
+
+    private int additiveIncrease = 5;
+
+    private double multiplicativeDecrease = 0.5;
+
+    // Mean processing time per record above which the database counts as congested
+    private long latencyTargetMs = 250;
+
+    // Threads waiting on a Hikari connection
+    private int pendingThreadsHigh = 2;
+
+    private int pendingThreadsPause = 8;
+
+    private double errorRateHigh = 0.05;
+
+    private double errorRatePause = 0.5;
+
+    // Healthy samples required before a paused listener is resumed
+    private int resumeAfterHealthySamples = 2;
+
+    // Query timeout of the SELECT 1 probe run against every pool while paused
+    private int probeTimeoutSeconds = 1;
+}
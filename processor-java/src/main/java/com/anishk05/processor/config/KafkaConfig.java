@@ -1,6 +1,8 @@
 package com.anishk05.processor.config;
 
+import com.anishk05.processor.kafka.PartitionStateManager;
 import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +11,7 @@ import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -28,13 +31,22 @@ public class KafkaConfig {
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(
-            ConsumerFactory<String, String> consumerFactory) {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = 
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory(
+            ConsumerFactory<String, byte[]> consumerFactory,
+            ObjectProvider<KafkaTransactionManager<?, ?>> kafkaTransactionManager,
+            PartitionStateManager partitionStateManager) {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = 
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setBatchListener(true); // whole poll batch is scheduled tenant-fairly
         factory.setConcurrency(3); // 3 concurrent consumers
+        // Checkpoints partition state on revoke and restores it on assignment
+        factory.getContainerProperties().setConsumerRebalanceListener(partitionStateManager);
+        // Present when spring.kafka.producer.transaction-id-prefix is set: offsets and DLQ
+        // sends of a batch then commit in one Kafka transaction
+        kafkaTransactionManager.ifAvailable(tm ->
+            factory.getContainerProperties().setTransactionManager(tm));
         return factory;
     }
 }
@@ -0,0 +1,109 @@
+package com.anishk05.processor.config;
+
+import com.anishk05.processor.api.DlqSample;
+import com.anishk05.processor.db.EventEntity;
+import com.anishk05.processor.db.SpillJournal;
+import com.anishk05.processor.service.AggregationDefinition;
+import com.anishk05.processor.service.DlqMessage;
+import com.anishk05.processor.service.IngestEvent;
+import com.anishk05.processor.service.KafkaEventWrapper;
+import com.anishk05.processor.service.ProcessedEventMessage;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.List;
+
+/**
+ * Reflection, JNI and resources a native image needs that AOT processing cannot discover
+ * on its own. Ignored on the JVM.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHints.Registrar.class)
+public class NativeHints {
+
+    // Bound by an ObjectMapper the code calls directly, not through a Spring endpoint
+    private static final List<Class<?>> JSON_TYPES = List.of(
+            KafkaEventWrapper.class,
+            IngestEvent.class,
+            EventEntity.class,
+            SpillJournal.SpilledEvent.class,
+            AggregationDefinition.class,
+            AggregationDefinition.Aggregate.class,
+            DlqMessage.class,
+            ProcessedEventMessage.class,
+            DlqSample.class);
+
+    // Package-private, so named instead of referenced
+    private static final List<String> JSON_TYPE_NAMES = List.of(
+            "com.anishk05.processor.kafka.PartitionStateManager$PartitionCheckpoint");
+
+    // LZ4Factory and XXHashFactory pick their implementation by class name, JNI first
+    private static final List<String> LZ4_TYPE_NAMES = List.of(
+            "net.jpountz.lz4.LZ4JNICompressor",
+            "net.jpountz.lz4.LZ4HCJNICompressor",
+            "net.jpountz.lz4.LZ4JNIFastDecompressor",
+            "net.jpountz.lz4.LZ4JNISafeDecompressor",
+            "net.jpountz.lz4.LZ4JavaUnsafeCompressor",
+            "net.jpountz.lz4.LZ4HCJavaUnsafeCompressor",
+            "net.jpountz.lz4.LZ4JavaUnsafeFastDecompressor",
+            "net.jpountz.lz4.LZ4JavaUnsafeSafeDecompressor",
+            "net.jpountz.lz4.LZ4JavaSafeCompressor",
+            "net.jpountz.lz4.LZ4HCJavaSafeCompressor",
+            "net.jpountz.lz4.LZ4JavaSafeFastDecompressor",
+            "net.jpountz.lz4.LZ4JavaSafeSafeDecompressor",
+            "net.jpountz.xxhash.XXHash32JNI",
+            "net.jpountz.xxhash.XXHash64JNI",
+            "net.jpountz.xxhash.StreamingXXHash32JNI$Factory",
+            "net.jpountz.xxhash.StreamingXXHash64JNI$Factory",
+            "net.jpountz.xxhash.XXHash32JavaUnsafe",
+            "net.jpountz.xxhash.XXHash64JavaUnsafe",
+            "net.jpountz.xxhash.StreamingXXHash32JavaUnsafe$Factory",
+            "net.jpountz.xxhash.StreamingXXHash64JavaUnsafe$Factory",
+            "net.jpountz.xxhash.XXHash32JavaSafe",
+            "net.jpountz.xxhash.XXHash64JavaSafe",
+            "net.jpountz.xxhash.StreamingXXHash32JavaSafe$Factory",
+            "net.jpountz.xxhash.StreamingXXHash64JavaSafe$Factory");
+
+    // Classes the zstd-jni and lz4-java libraries look up from native code
+    private static final List<String> JNI_TYPE_NAMES = List.of(
+            "com.github.luben.zstd.Zstd",
+            "com.github.luben.zstd.ZstdException",
+            "com.github.luben.zstd.ZstdCompressCtx",
+            "com.github.luben.zstd.ZstdDecompressCtx",
+            "com.github.luben.zstd.ZstdDictCompress",
+            "com.github.luben.zstd.ZstdDictDecompress",
+            "net.jpountz.lz4.LZ4JNI",
+            "net.jpountz.xxhash.XXHashJNI");
+
+    static class Registrar implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Payload schemas are found by classpath scanning in LocalSchemaRegistry
+            hints.resources().registerPattern("schemas/*.avsc");
+
+            for (Class<?> type : JSON_TYPES) {
+                hints.reflection().registerType(type, MemberCategory.values());
+            }
+            for (String name : JSON_TYPE_NAMES) {
+                hints.reflection().registerType(TypeReference.of(name), MemberCategory.values());
+            }
+            for (String name : LZ4_TYPE_NAMES) {
+                hints.reflection().registerType(TypeReference.of(name), MemberCategory.values());
+            }
+            for (String name : JNI_TYPE_NAMES) {
+                hints.jni().registerType(TypeReference.of(name), MemberCategory.values());
+            }
+
+            // Both libraries extract their shared library from the jar before loading it
+            hints.resources().registerPattern("linux/*/libzstd-jni-*.so");
+            hints.resources().registerPattern("darwin/*/libzstd-jni-*.dylib");
+            hints.resources().registerPattern("net/jpountz/util/linux/*/liblz4-java.so");
+            hints.resources().registerPattern("net/jpountz/util/darwin/*/liblz4-java.dylib");
+        }
+    }
+}
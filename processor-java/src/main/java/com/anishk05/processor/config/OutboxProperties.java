@@ -0,0 +1,37 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Transactional outbox and the relay publishing it to the processed-events topic.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.outbox")
+public class OutboxProperties {
+
+    private boolean enabled = true;
+
+    private String topic = "events.processed";
+
+    // Outbox rows claimed, published and deleted per relay batch
+    private int batchSize = 500;
+
+    // Relay poll interval while the outbox is empty; local commits wake it up immediately
+    private long pollIntervalMs = 200;
+
+    private long errorBackoffMs = 1000;
+
+    private String compressionType = "lz4";
+
+    private int lingerMs = 5;
+
+    private int producerBatchBytes = 262144;
+
+    private long sendTimeoutMs = 30000;
+
+    // Claimed rows a relay has not deleted by then (it crashed or stalled) are claimed again
+    private long claimLeaseMs = 120000;
+}
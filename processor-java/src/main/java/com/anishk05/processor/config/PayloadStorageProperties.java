@@ -0,0 +1,25 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Storage policy for event payloads. Payloads whose JSON is larger than the threshold
+ * are compressed into event_payload_blobs; smaller ones stay inline as queryable JSONB.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.payload-storage")
+public class PayloadStorageProperties {
+
+    private boolean enabled = true;
+
+    // Roughly where PostgreSQL starts TOASTing a row
+    private int offloadThresholdBytes = 2048;
+
+    // zstd or lz4
+    private String codec = "zstd";
+
+    private int zstdLevel = 3;
+}
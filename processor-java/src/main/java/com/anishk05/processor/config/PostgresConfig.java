@@ -1,14 +1,23 @@
 package com.anishk05.processor.config;
 
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @Configuration
 @EnableJpaRepositories(basePackages = "com.anishk05.processor.db")
 @EnableTransactionManagement
 public class PostgresConfig {
-    // Additional PostgreSQL configuration can be added here if needed
-}
-
 
+    // Declared explicitly so @Transactional keeps using the database when Kafka
+    // transactions are enabled and Boot adds a kafkaTransactionManager alongside it
+    @Bean
+    @Primary
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+}
@@ -0,0 +1,18 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Local stand-in for a schema registry. Payload schemas are Avro files named
+ * {event_type}.v{schema_version}.avsc under the configured location.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.schema-registry")
+public class SchemaRegistryProperties {
+
+    // Any Spring resource location, e.g. file:/etc/pulse/schemas/
+    private String location = "classpath:schemas/";
+}
@@ -0,0 +1,81 @@
+package com.anishk05.processor.config;
+
+import com.anishk05.processor.db.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single Hikari pool with one pool per shard behind a routing DataSource,
+ * so JPA, JdbcTemplate and the transaction manager all follow the shard chosen by
+ * ShardRouter. Without processor.sharding.enabled the auto-configured pool is used as is.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "processor.sharding", name = "enabled", havingValue = "true")
+@Slf4j
+public class ShardingConfig {
+
+    // spring.datasource, with its Hikari settings bound the same way Boot binds them
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource shardZeroDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public ShardRoutingDataSource dataSource(HikariDataSource shardZeroDataSource, ShardingProperties properties) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        shards.add(shardZeroDataSource);
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            // Not new HikariDataSource(config), which connects eagerly: like shard 0 the pool
+            // starts on first use, so a shard down at startup means spilling, not a failed boot
+            HikariDataSource dataSource = new HikariDataSource();
+            shardZeroDataSource.copyStateTo(dataSource);
+            dataSource.setJdbcUrl(shard.getUrl());
+            if (shard.getUsername() != null) {
+                dataSource.setUsername(shard.getUsername());
+            }
+            if (shard.getPassword() != null) {
+                dataSource.setPassword(shard.getPassword());
+            }
+            if (shard.getMaximumPoolSize() != null) {
+                dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+            }
+            dataSource.setPoolName("shard-" + shards.size());
+            shards.add(dataSource);
+        }
+        log.info("Routing event storage across {} shards", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // Boot's Flyway only sees the primary DataSource, i.e. shard 0; migrate every shard
+    // with the same configuration instead
+    @Bean
+    public FlywayMigrationStrategy shardedMigrationStrategy(ShardRoutingDataSource dataSource) {
+        return flyway -> {
+            for (DataSource shard : dataSource.getShards()) {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shard)
+                        .load()
+                        .migrate();
+            }
+        };
+    }
+}
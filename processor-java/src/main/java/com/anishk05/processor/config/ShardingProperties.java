@@ -0,0 +1,52 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tenant-sharded event storage. Shard 0 is spring.datasource and also holds the tenant
+ * directory and the tables that are not per tenant (aggregations, sketches); the entries
+ * of {@code shards} become shards 1..N. Each tenant is pinned to a shard on its first
+ * write and stays there until it is moved through the admin API.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    // Additional databases; pool settings not given here are copied from spring.datasource.hikari
+    private List<Shard> shards = new ArrayList<>();
+
+    // Shard for tenants seen for the first time; others are placed by hash across all shards
+    private Map<String, Integer> tenants = new HashMap<>();
+
+    // How often each processor reloads the directory, which bounds how long a moved
+    // tenant's writes can still reach its old shard
+    private long directoryRefreshMs = 5000;
+
+    // Rows copied or deleted per statement while moving a tenant
+    private int moveBatchSize = 1000;
+
+    // Upper bound for the old shard's relay to publish the tenant's pending outbox rows
+    private long moveOutboxDrainTimeoutMs = 300000;
+
+    // A move whose status has not been updated for this long died with its processor
+    // and may be started again
+    private long moveHeartbeatTimeoutMs = 60000;
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private Integer maximumPoolSize;
+    }
+}
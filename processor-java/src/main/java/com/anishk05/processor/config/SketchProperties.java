@@ -0,0 +1,48 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-minute sketches kept on payload fields: HyperLogLog for distinct counts and
+ * Space-Saving for heavy hitters, per tenant, event type and field.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.sketch")
+public class SketchProperties {
+
+    private boolean enabled = true;
+
+    // Top-level payload fields with a distinct-count sketch
+    private List<String> distinctFields = new ArrayList<>(List.of("user_id", "session_id"));
+
+    // Top-level payload fields with a heavy-hitter sketch
+    private List<String> heavyHitterFields = new ArrayList<>(List.of("user_id", "ip"));
+
+    // Heavy-hitter sketch on top-level payload key names, queried as field "$keys"
+    private boolean payloadKeys = true;
+
+    // 2^precision one-byte registers per sketch; 12 is 4 KB at about 1.6% standard error
+    private int hllPrecision = 12;
+
+    // Counters per heavy-hitter sketch, also the largest k a top-K query can ask for.
+    // Counts overestimate by at most events / capacity, so top-K is reliable for k well below it
+    private int heavyHitterCapacity = 256;
+
+    // Longer values are truncated before counting
+    private int maxValueLength = 256;
+
+    // How often the minute sketches built since the last flush are merged into event_sketches
+    private long flushIntervalMs = 5000;
+
+    // Sketches held in memory between flushes; events for further keys are not sketched
+    private int maxOpenSketches = 50000;
+
+    // Rows fetched at a time when merging a query window
+    private int queryFetchSize = 500;
+}
@@ -0,0 +1,26 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Local spill journal used while PostgreSQL is unreachable.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.spill")
+public class SpillProperties {
+
+    private boolean enabled = true;
+
+    private String directory = "./spill";
+
+    // Each segment is preallocated and memory-mapped at this size
+    private int segmentSizeMb = 64;
+
+    private long drainIntervalMs = 2000;
+
+    // Rows per JDBC batch when loading the journal back into events
+    private int drainBatchSize = 500;
+}
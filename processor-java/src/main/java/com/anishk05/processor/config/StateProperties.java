@@ -0,0 +1,32 @@
+package com.anishk05.processor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Partition-scoped state checkpoints, so in-memory state follows a partition
+ * to its new owner on rebalance instead of being rebuilt cold.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processor.state")
+public class StateProperties {
+
+    private boolean enabled = true;
+
+    // Local checkpoint files, one per owned partition
+    private String directory = "state";
+
+    // Compacted topic holding the latest checkpoint per consumer group and partition
+    private String changelogTopic = "events.processor-state";
+
+    private long checkpointIntervalMs = 30000;
+
+    // Upper bound, per rebalance, for the changelog reader to catch up before restoring
+    private long restoreTimeoutMs = 10000;
+
+    // Records between a checkpoint and the committed offset are replayed into state;
+    // beyond this the gap is skipped and the state starts from the checkpoint as-is
+    private long maxReplayRecords = 100000;
+}
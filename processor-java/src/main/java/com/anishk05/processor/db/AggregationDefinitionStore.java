@@ -0,0 +1,59 @@
+package com.anishk05.processor.db;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Durable registry of continuous aggregation definitions, stored as their JSON form.
+ */
+@Component
+public class AggregationDefinitionStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO aggregation_definitions (name, definition, created_at) VALUES (?, ?::jsonb, ?) " +
+            "ON CONFLICT (name) DO NOTHING";
+
+    private static final String DELETE_SQL = "DELETE FROM aggregation_definitions WHERE name = ?";
+
+    private static final String SELECT_SQL = "SELECT name, definition FROM aggregation_definitions ORDER BY name";
+
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM aggregation_definitions";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AggregationDefinitionStore(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @return false if a definition with that name already exists
+     */
+    public boolean insert(String name, String definitionJson) {
+        return jdbcTemplate.update(INSERT_SQL, name, definitionJson, Timestamp.valueOf(LocalDateTime.now())) > 0;
+    }
+
+    public boolean delete(String name) {
+        return jdbcTemplate.update(DELETE_SQL, name) > 0;
+    }
+
+    public int count() {
+        Integer count = jdbcTemplate.queryForObject(COUNT_SQL, Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return definition JSON by name
+     */
+    public Map<String, String> findAll() {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_SQL, (RowCallbackHandler) rs -> definitions.put(rs.getString(1), rs.getString(2)));
+        return definitions;
+    }
+}
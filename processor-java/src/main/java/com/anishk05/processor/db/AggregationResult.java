@@ -0,0 +1,29 @@
+package com.anishk05.processor.db;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One aggregate of one group in a finalized window, as stored in aggregation_results.
+ * When flushed, the value is one source partition's contribution, see AggregationResultStore.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregationResult {
+    private String aggregationName;
+    private LocalDateTime windowStart;
+    private LocalDateTime windowEnd;
+    // JSON object of group-by field to value
+    private String groupKey;
+    private String aggregate;
+    private String function;
+    private double value;
+    // Set when flushing; results read back are already combined over partitions
+    private String sourcePartition;
+}
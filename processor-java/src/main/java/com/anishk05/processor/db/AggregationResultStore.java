@@ -0,0 +1,133 @@
+package com.anishk05.processor.db;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch writer and reader for aggregation_results and the flush watermarks behind them.
+ * Each source partition's contribution to a window is stored as an absolute value in
+ * aggregation_partials and replaced on every flush of that window, so a retried flush or
+ * an early shutdown flush followed by the full window is never added twice. The row in
+ * aggregation_results is then recomputed from the partitions with the function's own
+ * semantics (sum for count and sum, least or greatest for min and max).
+ */
+@Component
+public class AggregationResultStore {
+
+    // Takes the result row lock first, so concurrent flushes of other partitions into the
+    // same window wait and each recompute sees every committed partial
+    private static final String LOCK_RESULT_SQL =
+            "INSERT INTO aggregation_results (aggregation_name, window_start, window_end, group_key, " +
+            "aggregate, aggregate_function, value, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (aggregation_name, window_start, group_key, aggregate) DO UPDATE SET " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String UPSERT_PARTIAL_SQL =
+            "INSERT INTO aggregation_partials (aggregation_name, window_start, group_key, aggregate, " +
+            "source_partition, value, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (aggregation_name, window_start, group_key, aggregate, source_partition) DO UPDATE SET " +
+            "value = EXCLUDED.value, updated_at = EXCLUDED.updated_at";
+
+    private static final String RECOMPUTE_SQL =
+            "UPDATE aggregation_results r SET value = (" +
+            "SELECT CASE r.aggregate_function " +
+            "WHEN 'min' THEN MIN(p.value) WHEN 'max' THEN MAX(p.value) ELSE SUM(p.value) END " +
+            "FROM aggregation_partials p WHERE p.aggregation_name = r.aggregation_name " +
+            "AND p.window_start = r.window_start AND p.group_key = r.group_key AND p.aggregate = r.aggregate) " +
+            "WHERE r.aggregation_name = ? AND r.window_start = ? AND r.group_key = ? AND r.aggregate = ?";
+
+    private static final String UPSERT_WATERMARK_SQL =
+            "INSERT INTO aggregation_watermarks (aggregation_name, source_partition, flushed_until, updated_at) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (aggregation_name, source_partition) DO UPDATE SET " +
+            "flushed_until = GREATEST(aggregation_watermarks.flushed_until, EXCLUDED.flushed_until), " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private static final String SELECT_WATERMARKS_SQL =
+            "SELECT aggregation_name, flushed_until FROM aggregation_watermarks WHERE source_partition = ?";
+
+    private static final String SELECT_SQL =
+            "SELECT aggregation_name, window_start, window_end, group_key, aggregate, aggregate_function, value " +
+            "FROM aggregation_results " +
+            "WHERE aggregation_name = ? AND window_start >= ? AND window_start < ? " +
+            "ORDER BY window_start, group_key, aggregate";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AggregationResultStore(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Writes finalized windows together with the watermarks they were finalized at.
+     */
+    @Transactional
+    public void flush(List<AggregationResult> results, List<AggregationWatermark> watermarks) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        upsertAll(results, now);
+
+        List<Object[]> rows = new ArrayList<>(watermarks.size());
+        for (AggregationWatermark w : watermarks) {
+            rows.add(new Object[]{w.getAggregationName(), w.getSourcePartition(), Timestamp.valueOf(w.getFlushedUntil()), now});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_WATERMARK_SQL, rows);
+        }
+    }
+
+    public Map<String, LocalDateTime> findWatermarks(String sourcePartition) {
+        Map<String, LocalDateTime> watermarks = new HashMap<>();
+        jdbcTemplate.query(SELECT_WATERMARKS_SQL, (RowCallbackHandler) rs ->
+                watermarks.put(rs.getString(1), rs.getTimestamp(2).toLocalDateTime()), sourcePartition);
+        return watermarks;
+    }
+
+    private void upsertAll(List<AggregationResult> results, Timestamp now) {
+        if (results.isEmpty()) {
+            return;
+        }
+        List<Object[]> locks = new ArrayList<>(results.size());
+        List<Object[]> partials = new ArrayList<>(results.size());
+        List<Object[]> keys = new ArrayList<>(results.size());
+        for (AggregationResult r : results) {
+            Timestamp windowStart = Timestamp.valueOf(r.getWindowStart());
+            locks.add(new Object[]{
+                    r.getAggregationName(), windowStart, Timestamp.valueOf(r.getWindowEnd()),
+                    r.getGroupKey(), r.getAggregate(), r.getFunction(), r.getValue(), now
+            });
+            partials.add(new Object[]{
+                    r.getAggregationName(), windowStart, r.getGroupKey(), r.getAggregate(),
+                    r.getSourcePartition(), r.getValue(), now
+            });
+            keys.add(new Object[]{r.getAggregationName(), windowStart, r.getGroupKey(), r.getAggregate()});
+        }
+        jdbcTemplate.batchUpdate(LOCK_RESULT_SQL, locks);
+        jdbcTemplate.batchUpdate(UPSERT_PARTIAL_SQL, partials);
+        jdbcTemplate.batchUpdate(RECOMPUTE_SQL, keys);
+    }
+
+    public List<AggregationResult> find(String aggregationName, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> AggregationResult.builder()
+                        .aggregationName(rs.getString(1))
+                        .windowStart(rs.getTimestamp(2).toLocalDateTime())
+                        .windowEnd(rs.getTimestamp(3).toLocalDateTime())
+                        .groupKey(rs.getString(4))
+                        .aggregate(rs.getString(5))
+                        .function(rs.getString(6))
+                        .value(rs.getDouble(7))
+                        .build(),
+                aggregationName, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
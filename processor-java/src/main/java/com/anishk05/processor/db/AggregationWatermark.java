@@ -0,0 +1,19 @@
+package com.anishk05.processor.db;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flush progress of one aggregation for one source partition (topic-partition).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregationWatermark {
+    private String aggregationName;
+    private String sourcePartition;
+    private LocalDateTime flushedUntil;
+}
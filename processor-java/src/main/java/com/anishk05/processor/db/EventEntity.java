@@ -15,7 +15,7 @@ import java.util.UUID;
 @Entity
 @Table(name = "events")
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class EventEntity {
@@ -53,6 +53,10 @@ public class EventEntity {
     
     @Column(name = "status", nullable = false)
     private String status;
+    
+    // Set when the payload lives compressed in event_payload_blobs; payload then holds a stub
+    @Column(name = "payload_codec")
+    private String payloadCodec;
 }
 
 
@@ -0,0 +1,41 @@
+package com.anishk05.processor.db;
+
+import com.anishk05.processor.config.ExportProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Streams rows for bulk exports straight from JDBC without materializing entities.
+ * The PostgreSQL driver only uses a server-side cursor when autocommit is off and a
+ * fetch size is set, hence the read-only transaction around the query.
+ */
+@Repository
+public class EventExportRepository {
+
+    private static final String EXPORT_SQL =
+            "SELECT e.id, e.tenant_id, e.event_id, e.idempotency_key, e.event_type, e.schema_version, " +
+            "e.occurred_at, e.received_at, e.processed_at, e.payload::text AS payload, e.status, " +
+            "e.payload_codec, b.original_size AS payload_original_size, b.data AS payload_blob " +
+            "FROM events e " +
+            "LEFT JOIN event_payload_blobs b ON b.event_id = e.id " +
+            "WHERE e.tenant_id = ? AND e.occurred_at >= ? AND e.occurred_at < ? " +
+            "ORDER BY e.occurred_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventExportRepository(DataSource dataSource, ExportProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.getFetchSize());
+    }
+
+    @Transactional(readOnly = true)
+    public void streamEvents(String tenantId, LocalDateTime from, LocalDateTime to, RowCallbackHandler handler) {
+        jdbcTemplate.query(EXPORT_SQL, handler, tenantId, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
@@ -0,0 +1,37 @@
+package com.anishk05.processor.db;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "event_payload_blobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventPayloadBlobEntity {
+
+    @Id
+    @Column(name = "event_id")
+    private UUID eventId;
+
+    @Column(name = "tenant_id", nullable = false)
+    private String tenantId;
+
+    @Column(name = "codec", nullable = false)
+    private String codec;
+
+    @Column(name = "original_size", nullable = false)
+    private Integer originalSize;
+
+    @Column(name = "stored_size", nullable = false)
+    private Integer storedSize;
+
+    @Column(name = "data", nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+}
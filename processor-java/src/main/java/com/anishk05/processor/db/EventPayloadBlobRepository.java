@@ -0,0 +1,18 @@
+package com.anishk05.processor.db;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface EventPayloadBlobRepository extends JpaRepository<EventPayloadBlobEntity, UUID> {
+
+    @Query("SELECT b.tenantId, COUNT(b), SUM(b.originalSize), SUM(b.storedSize) " +
+           "FROM EventPayloadBlobEntity b " +
+           "GROUP BY b.tenantId " +
+           "ORDER BY SUM(b.originalSize) - SUM(b.storedSize) DESC")
+    List<Object[]> summarizeByTenant();
+}
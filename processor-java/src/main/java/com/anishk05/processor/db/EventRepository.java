@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -33,6 +34,12 @@ public interface EventRepository extends JpaRepository<EventEntity, UUID> {
     
     @Query("SELECT COUNT(e) FROM EventEntity e WHERE e.processedAt > :since")
     long countEventsSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT e.id, e.eventType FROM EventEntity e WHERE e.tenantId = :tenantId AND e.processedAt > :since")
+    List<Object[]> findIdsAndTypesSince(@Param("tenantId") String tenantId, @Param("since") LocalDateTime since);
+
+    @Query("SELECT e.id FROM EventEntity e WHERE e.id IN :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
 }
 
 
@@ -0,0 +1,25 @@
+package com.anishk05.processor.db;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One serialized minute sketch, as stored in event_sketches.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventSketch {
+    // "hll" or "topk"
+    private String sketchType;
+    private String tenantId;
+    private String eventType;
+    private String field;
+    private LocalDateTime minute;
+    private byte[] data;
+}
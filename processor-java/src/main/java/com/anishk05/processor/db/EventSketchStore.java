@@ -0,0 +1,100 @@
+package com.anishk05.processor.db;
+
+import com.anishk05.processor.config.SketchProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writer and reader for event_sketches. Sketches cannot be merged in SQL, so an existing
+ * row is locked, merged with the new sketch by the caller's function and written back.
+ */
+@Component
+public class EventSketchStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO event_sketches (sketch_type, tenant_id, field, minute, event_type, data, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (sketch_type, tenant_id, field, minute, event_type) DO NOTHING";
+
+    private static final String SELECT_FOR_UPDATE_SQL =
+            "SELECT data FROM event_sketches " +
+            "WHERE sketch_type = ? AND tenant_id = ? AND field = ? AND minute = ? AND event_type = ? " +
+            "FOR UPDATE";
+
+    private static final String UPDATE_SQL =
+            "UPDATE event_sketches SET data = ?, updated_at = ? " +
+            "WHERE sketch_type = ? AND tenant_id = ? AND field = ? AND minute = ? AND event_type = ?";
+
+    private static final String SELECT_SQL =
+            "SELECT data FROM event_sketches " +
+            "WHERE sketch_type = ? AND tenant_id = ? AND field = ? AND minute >= ? AND minute < ?";
+
+    // Lock order across concurrent flushes, so two processors never deadlock on the same rows
+    private static final Comparator<EventSketch> KEY_ORDER = Comparator
+            .comparing(EventSketch::getSketchType)
+            .thenComparing(EventSketch::getTenantId)
+            .thenComparing(EventSketch::getField)
+            .thenComparing(EventSketch::getMinute)
+            .thenComparing(EventSketch::getEventType);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventSketchStore(DataSource dataSource, SketchProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.getQueryFetchSize());
+    }
+
+    /**
+     * Stores each sketch, merging it into the row already stored for its key.
+     */
+    @Transactional
+    public void mergeAll(List<EventSketch> sketches, SketchMerger merger) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<EventSketch> ordered = new ArrayList<>(sketches);
+        ordered.sort(KEY_ORDER);
+
+        for (EventSketch s : ordered) {
+            Timestamp minute = Timestamp.valueOf(s.getMinute());
+            int inserted = jdbcTemplate.update(INSERT_SQL,
+                    s.getSketchType(), s.getTenantId(), s.getField(), minute, s.getEventType(), s.getData(), now);
+            if (inserted > 0) {
+                continue;
+            }
+            byte[] existing = jdbcTemplate.queryForObject(SELECT_FOR_UPDATE_SQL, byte[].class,
+                    s.getSketchType(), s.getTenantId(), s.getField(), minute, s.getEventType());
+            jdbcTemplate.update(UPDATE_SQL, merger.merge(s.getSketchType(), existing, s.getData()), now,
+                    s.getSketchType(), s.getTenantId(), s.getField(), minute, s.getEventType());
+        }
+    }
+
+    /**
+     * Streams the stored sketches of a window one at a time; eventType null covers all types.
+     * Read-only transaction so the driver uses a cursor instead of loading every row.
+     */
+    @Transactional(readOnly = true)
+    public void forEach(String sketchType, String tenantId, String field, String eventType,
+                        LocalDateTime from, LocalDateTime to, Consumer<byte[]> consumer) {
+        RowCallbackHandler handler = rs -> consumer.accept(rs.getBytes(1));
+        if (eventType == null) {
+            jdbcTemplate.query(SELECT_SQL, handler,
+                    sketchType, tenantId, field, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        } else {
+            jdbcTemplate.query(SELECT_SQL + " AND event_type = ?", handler,
+                    sketchType, tenantId, field, Timestamp.valueOf(from), Timestamp.valueOf(to), eventType);
+        }
+    }
+
+    public interface SketchMerger {
+        byte[] merge(String sketchType, byte[] stored, byte[] added);
+    }
+}
@@ -0,0 +1,209 @@
+package com.anishk05.processor.db;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.anishk05.processor.config.OutboxProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Writes event rows and, for large payloads, their compressed blobs in one transaction.
+ * Event ids are derived from tenant and idempotency key, and inserts skip ids that already
+ * exist, so redelivered or replayed records never produce a second row. This is what lets
+ * the Kafka side retry a whole batch after an aborted transaction. Each tenant's rows go
+ * to the shard ShardRouter assigns it; while a tenant is being moved, ids still on its
+ * previous shard count as existing too.
+ * Newly inserted events also get an event_outbox row in the same transaction, so an
+ * event is published downstream if and only if it was committed.
+ */
+@Component
+public class EventStore {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO events (id, tenant_id, event_id, idempotency_key, event_type, schema_version, " +
+            "occurred_at, received_at, processed_at, payload, status, payload_codec) VALUES ";
+
+    private static final String INSERT_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?::jsonb, ?, ?)";
+
+    static final String INSERT_SQL = INSERT_PREFIX + INSERT_VALUES + " ON CONFLICT (id) DO NOTHING";
+
+    private static final int INSERT_COLUMNS = 12;
+
+    // Keeps a full chunk well below the 32767 bind parameter limit
+    private static final int INSERT_CHUNK_ROWS = 500;
+
+    static final String INSERT_BLOB_SQL =
+            "INSERT INTO event_payload_blobs (event_id, tenant_id, codec, original_size, stored_size, data) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (event_id) DO NOTHING";
+
+    private static final String SELECT_EXISTING_SQL = "SELECT id FROM events WHERE id = ANY(?)";
+
+    private static final String INSERT_OUTBOX_SQL =
+            "INSERT INTO event_outbox (event_id, tenant_id) VALUES (?, ?)";
+
+    private final PayloadStoragePolicy payloadStoragePolicy;
+    private final OutboxProperties outboxProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventStore(PayloadStoragePolicy payloadStoragePolicy, OutboxProperties outboxProperties,
+                      ApplicationEventPublisher eventPublisher, ShardRouter shardRouter, DataSource dataSource) {
+        this.payloadStoragePolicy = payloadStoragePolicy;
+        this.outboxProperties = outboxProperties;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @return false if a row with the same id already existed (a redelivery)
+     */
+    public boolean save(EventEntity entity) throws JsonProcessingException {
+        return saveAll(List.of(entity)) > 0;
+    }
+
+    /**
+     * Writes each tenant's events to its shard, one transaction per shard. A batch spanning
+     * shards is not atomic as a whole, which is fine as long as it is retried: inserts skip
+     * rows that were committed before.
+     *
+     * @return number of rows actually inserted
+     */
+    public int saveAll(List<EventEntity> entities) throws JsonProcessingException {
+        return insertAll(entities).size();
+    }
+
+    /**
+     * Like {@link #saveAll}, returning the ids of the rows actually inserted.
+     */
+    public Set<UUID> insertAll(List<EventEntity> entities) throws JsonProcessingException {
+        Map<Integer, ShardBatch> batches = new TreeMap<>();
+        for (EventEntity entity : entities) {
+            PayloadStoragePolicy.StoredEvent stored = payloadStoragePolicy.prepare(entity);
+            EventEntity e = stored.getRow();
+            ShardBatch batch = batches.computeIfAbsent(shardRouter.shardFor(e.getTenantId()), k -> new ShardBatch());
+            List<Integer> readShards = shardRouter.readShardsFor(e.getTenantId());
+            if (readShards.size() > 1) {
+                batch.moving.computeIfAbsent(readShards.get(1), k -> new ArrayList<>()).add(e.getId());
+            }
+            batch.rows.add(new Object[]{
+                    e.getId(), e.getTenantId(), e.getEventId(), e.getIdempotencyKey(), e.getEventType(),
+                    e.getSchemaVersion(), Timestamp.valueOf(e.getOccurredAt()), Timestamp.valueOf(e.getReceivedAt()),
+                    Timestamp.valueOf(e.getProcessedAt()), stored.getPayloadJson(), e.getStatus(), e.getPayloadCodec()
+            });
+            EventPayloadBlobEntity b = stored.getBlob();
+            if (b != null) {
+                batch.blobs.add(new Object[]{
+                        b.getEventId(), b.getTenantId(), b.getCodec(), b.getOriginalSize(), b.getStoredSize(), b.getData()
+                });
+            }
+        }
+
+        Set<UUID> inserted = new HashSet<>();
+        for (Map.Entry<Integer, ShardBatch> entry : batches.entrySet()) {
+            skipMovedRows(entry.getValue());
+            inserted.addAll(shardRouter.inTransaction(entry.getKey(), () -> insert(entry.getValue())));
+        }
+        return inserted;
+    }
+
+    private Set<UUID> insert(ShardBatch batch) {
+        // Rows first: blobs and outbox entries reference events(id)
+        Set<UUID> inserted = insertRows(batch.rows);
+        Set<UUID> unpublished = new HashSet<>(inserted);
+        List<Object[]> outbox = new ArrayList<>(inserted.size());
+        for (Object[] row : batch.rows) {
+            // remove: a record repeated within the batch was inserted (and is published) once
+            if (unpublished.remove((UUID) row[0])) {
+                outbox.add(new Object[]{row[0], row[1]});
+            }
+        }
+        if (!batch.blobs.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_BLOB_SQL, batch.blobs);
+        }
+        if (outboxProperties.isEnabled() && !outbox.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_OUTBOX_SQL, outbox);
+            // Delivered to the relay after commit only, see OutboxRelay
+            eventPublisher.publishEvent(new OutboxAppended(outbox.size()));
+        }
+        return inserted;
+    }
+
+    /**
+     * Multi-row INSERT ... RETURNING id, so ids skipped by ON CONFLICT are known exactly.
+     * Batched update counts cannot tell them apart: the driver may report SUCCESS_NO_INFO.
+     */
+    private Set<UUID> insertRows(List<Object[]> rows) {
+        Set<UUID> inserted = new HashSet<>(rows.size() * 2);
+        for (int from = 0; from < rows.size(); from += INSERT_CHUNK_ROWS) {
+            List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + INSERT_CHUNK_ROWS));
+            StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+            List<Object> args = new ArrayList<>(chunk.size() * INSERT_COLUMNS);
+            for (Object[] row : chunk) {
+                if (!args.isEmpty()) {
+                    sql.append(", ");
+                }
+                sql.append(INSERT_VALUES);
+                Collections.addAll(args, row);
+            }
+            sql.append(" ON CONFLICT (id) DO NOTHING RETURNING id");
+            inserted.addAll(jdbcTemplate.queryForList(sql.toString(), UUID.class, args.toArray()));
+        }
+        return inserted;
+    }
+
+    /**
+     * Drops rows of moving tenants that are still on the previous shard. A redelivery that
+     * arrives before the mover copied the original would otherwise be inserted, and
+     * published, a second time. Checked before the insert: the mover deletes a row from the
+     * previous shard only once it is on the new one, so it is always found in one of them.
+     */
+    private void skipMovedRows(ShardBatch batch) {
+        if (batch.moving.isEmpty()) {
+            return;
+        }
+        Set<UUID> existing = new HashSet<>();
+        for (Map.Entry<Integer, List<UUID>> entry : batch.moving.entrySet()) {
+            UUID[] ids = entry.getValue().toArray(UUID[]::new);
+            existing.addAll(shardRouter.onShard(entry.getKey(), () ->
+                    jdbcTemplate.query(SELECT_EXISTING_SQL,
+                            ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)),
+                            (rs, rowNum) -> rs.getObject(1, UUID.class))));
+        }
+        if (!existing.isEmpty()) {
+            batch.rows.removeIf(row -> existing.contains((UUID) row[0]));
+            batch.blobs.removeIf(blob -> existing.contains((UUID) blob[0]));
+        }
+    }
+
+    private static class ShardBatch {
+        final List<Object[]> rows = new ArrayList<>();
+        final List<Object[]> blobs = new ArrayList<>();
+        // Previous shard -> ids of moving tenants' rows to check there first
+        final Map<Integer, List<UUID>> moving = new TreeMap<>();
+    }
+
+    /**
+     * Published inside the inserting transaction whenever outbox rows were written.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class OutboxAppended {
+        private int rows;
+    }
+}
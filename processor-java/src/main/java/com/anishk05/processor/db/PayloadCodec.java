@@ -0,0 +1,41 @@
+package com.anishk05.processor.db;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Factory;
+
+public enum PayloadCodec {
+    ZSTD {
+        @Override
+        public byte[] compress(byte[] raw, int level) {
+            return Zstd.compress(raw, level);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int originalSize) {
+            return Zstd.decompress(data, originalSize);
+        }
+    },
+    LZ4 {
+        @Override
+        public byte[] compress(byte[] raw, int level) {
+            return LZ4Factory.fastestInstance().fastCompressor().compress(raw);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int originalSize) {
+            return LZ4Factory.fastestInstance().fastDecompressor().decompress(data, originalSize);
+        }
+    };
+
+    public abstract byte[] compress(byte[] raw, int level);
+
+    public abstract byte[] decompress(byte[] data, int originalSize);
+
+    public String id() {
+        return name().toLowerCase();
+    }
+
+    public static PayloadCodec fromId(String id) {
+        return valueOf(id.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,117 @@
+package com.anishk05.processor.db;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.PayloadStorageProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Decides where an event's payload is stored. Small payloads stay inline as JSONB;
+ * payloads above the threshold are compressed into event_payload_blobs and the inline
+ * column keeps a small stub so the row stays below the TOAST threshold.
+ */
+@Component
+@Slf4j
+public class PayloadStoragePolicy {
+
+    public static final String OFFLOADED_MARKER = "_offloaded";
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private final PayloadStorageProperties properties;
+    private final ObjectMapper objectMapper;
+    private final EventPayloadBlobRepository blobRepository;
+    private final PayloadCodec codec;
+
+    public PayloadStoragePolicy(PayloadStorageProperties properties, ObjectMapper objectMapper,
+                                EventPayloadBlobRepository blobRepository) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.blobRepository = blobRepository;
+        this.codec = PayloadCodec.fromId(properties.getCodec());
+    }
+
+    /**
+     * Returns the row to write, its payload JSON and, for large payloads, the blob to write
+     * alongside it. The given entity is left untouched so it can still be spilled as-is if
+     * the write fails.
+     */
+    public StoredEvent prepare(EventEntity entity) throws JsonProcessingException {
+        byte[] raw = objectMapper.writeValueAsBytes(entity.getPayload());
+        if (!properties.isEnabled() || raw.length <= properties.getOffloadThresholdBytes()) {
+            return new StoredEvent(entity, new String(raw, StandardCharsets.UTF_8), null);
+        }
+
+        byte[] compressed = codec.compress(raw, properties.getZstdLevel());
+        Map<String, Object> stub = new LinkedHashMap<>();
+        stub.put(OFFLOADED_MARKER, true);
+        stub.put("codec", codec.id());
+        stub.put("original_size", raw.length);
+
+        EventEntity row = entity.toBuilder()
+                .payload(stub)
+                .payloadCodec(codec.id())
+                .build();
+        EventPayloadBlobEntity blob = EventPayloadBlobEntity.builder()
+                .eventId(entity.getId())
+                .tenantId(entity.getTenantId())
+                .codec(codec.id())
+                .originalSize(raw.length)
+                .storedSize(compressed.length)
+                .data(compressed)
+                .build();
+        return new StoredEvent(row, objectMapper.writeValueAsString(stub), blob);
+    }
+
+    public byte[] inflateRaw(String codecId, byte[] data, int originalSize) {
+        return PayloadCodec.fromId(codecId).decompress(data, originalSize);
+    }
+
+    /**
+     * Returns each event's full payload, loading offloaded payloads in one query.
+     */
+    public Map<UUID, Map<String, Object>> resolvePayloads(Collection<EventEntity> entities) {
+        Map<UUID, Map<String, Object>> payloads = new HashMap<>();
+        List<UUID> offloaded = new ArrayList<>();
+        for (EventEntity entity : entities) {
+            if (entity.getPayloadCodec() == null) {
+                payloads.put(entity.getId(), entity.getPayload());
+            } else {
+                offloaded.add(entity.getId());
+            }
+        }
+
+        if (!offloaded.isEmpty()) {
+            for (EventPayloadBlobEntity blob : blobRepository.findAllById(offloaded)) {
+                try {
+                    byte[] raw = inflateRaw(blob.getCodec(), blob.getData(), blob.getOriginalSize());
+                    payloads.put(blob.getEventId(), objectMapper.readValue(raw, PAYLOAD_TYPE));
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to inflate payload for event {}: {}", blob.getEventId(), e.getMessage());
+                }
+            }
+        }
+
+        // Fall back to the stub when a blob is missing or unreadable
+        for (EventEntity entity : entities) {
+            payloads.putIfAbsent(entity.getId(), entity.getPayload());
+        }
+        return payloads;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class StoredEvent {
+        private EventEntity row;
+        private String payloadJson;
+        private EventPayloadBlobEntity blob;
+    }
+}
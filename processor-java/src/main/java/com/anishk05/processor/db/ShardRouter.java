@@ -0,0 +1,270 @@
+package com.anishk05.processor.db;
+
+import com.anishk05.processor.config.ShardingProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Maps tenants to shards and runs work against a shard.
+ *
+ * The mapping lives in tenant_shards on shard 0 and is cached by every processor. A tenant
+ * without an entry is pinned on its first write, to its configured shard or by hash, so
+ * adding shards never moves existing tenants implicitly. While a tenant is being moved
+ * its entry also names the previous shard, and reads consult both.
+ *
+ * With sharding disabled there is a single shard and no directory.
+ */
+@Component
+@Slf4j
+public class ShardRouter {
+
+    private static final String SELECT_ALL_SQL = "SELECT tenant_id, shard, previous_shard FROM tenant_shards";
+
+    private static final String SELECT_SQL =
+            "SELECT tenant_id, shard, previous_shard FROM tenant_shards WHERE tenant_id = ?";
+
+    private static final String PIN_SQL =
+            "INSERT INTO tenant_shards (tenant_id, shard, updated_at) VALUES (?, ?, ?) " +
+            "ON CONFLICT (tenant_id) DO NOTHING";
+
+    private static final String ASSIGN_SQL =
+            "INSERT INTO tenant_shards (tenant_id, shard, previous_shard, updated_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (tenant_id) DO UPDATE SET shard = EXCLUDED.shard, " +
+            "previous_shard = EXCLUDED.previous_shard, updated_at = EXCLUDED.updated_at";
+
+    private final ShardingProperties properties;
+    private final List<DataSource> shards;
+    private final TransactionTemplate transactionTemplate;
+    // Shard 0's own pool, so directory reads never join a transaction on another shard
+    private final JdbcTemplate directory;
+    private final Map<String, TenantPlacement> placements = new ConcurrentHashMap<>();
+    private ExecutorService scatterPool;
+
+    public ShardRouter(ShardingProperties properties, DataSource dataSource,
+                       PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.shards = dataSource instanceof ShardRoutingDataSource routing
+                ? routing.getShards()
+                : List.of(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = new JdbcTemplate(shards.get(0));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!isSharded()) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        scatterPool = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread t = new Thread(r, "shard-query-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Directory is loaded lazily per tenant until shard 0 answers
+            log.warn("Could not load tenant shard directory: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scatterPool != null) {
+            scatterPool.shutdown();
+        }
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public List<DataSource> dataSources() {
+        return shards;
+    }
+
+    /**
+     * Shard new events of the tenant are written to, pinning the tenant if it has no entry yet.
+     */
+    public int shardFor(String tenantId) {
+        if (!isSharded()) {
+            return 0;
+        }
+        TenantPlacement placement = placements.get(tenantId);
+        if (placement == null) {
+            directory.update(PIN_SQL, tenantId, initialShard(tenantId), Timestamp.valueOf(LocalDateTime.now()));
+            placement = load(tenantId);
+        }
+        return placement.getShard();
+    }
+
+    /**
+     * Shards holding the tenant's events, current shard first. Does not pin the tenant.
+     */
+    public List<Integer> readShardsFor(String tenantId) {
+        if (!isSharded()) {
+            return List.of(0);
+        }
+        TenantPlacement placement = placements.get(tenantId);
+        if (placement == null) {
+            List<TenantPlacement> found = directory.query(SELECT_SQL, (rs, rowNum) -> toPlacement(rs), tenantId);
+            if (found.isEmpty()) {
+                return List.of(initialShard(tenantId));
+            }
+            placement = found.get(0);
+            placements.put(tenantId, placement);
+        }
+        return placement.getPreviousShard() == null
+                ? List.of(placement.getShard())
+                : List.of(placement.getShard(), placement.getPreviousShard());
+    }
+
+    public boolean isMoving(String tenantId) {
+        return readShardsFor(tenantId).size() > 1;
+    }
+
+    public Map<String, TenantPlacement> placements() {
+        return new TreeMap<>(placements);
+    }
+
+    /**
+     * Records a tenant's shard, and the shard it is being moved from (null once moved).
+     */
+    public void assign(String tenantId, int shard, Integer previousShard) {
+        directory.update(ASSIGN_SQL, tenantId, shard, previousShard, Timestamp.valueOf(LocalDateTime.now()));
+        placements.put(tenantId, new TenantPlacement(shard, previousShard));
+    }
+
+    /**
+     * Runs work with the shard's connections. Must not be called inside a transaction
+     * bound to another shard, which would keep using that shard's connection.
+     */
+    public <T, E extends Exception> T onShard(int shard, ShardWork<T, E> work) throws E {
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalArgumentException("No shard " + shard + ", there are " + shards.size());
+        }
+        Integer previous = ShardRoutingDataSource.currentShard();
+        int current = previous == null ? 0 : previous;
+        if (current != shard && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard " + current);
+        }
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return work.run();
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+
+    /**
+     * Runs work in a new database transaction on the shard.
+     */
+    public <T> T inTransaction(int shard, Supplier<T> work) {
+        return onShard(shard, () -> transactionTemplate.execute(status -> work.get()));
+    }
+
+    /**
+     * Runs work on every shard in parallel and returns the results in shard order.
+     */
+    public <T> List<T> scatter(ShardWork<T, ? extends Exception> work) {
+        if (!isSharded()) {
+            try {
+                return List.of(onShard(0, work));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            int shard = i;
+            futures.add(scatterPool.submit(() -> onShard(shard, work)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Shard query failed", e.getCause());
+        }
+        return results;
+    }
+
+    // Picks up moves started by other processors
+    @Scheduled(fixedDelayString = "${processor.sharding.directory-refresh-ms:5000}")
+    public void refresh() {
+        if (!isSharded()) {
+            return;
+        }
+        Map<String, TenantPlacement> loaded = new HashMap<>();
+        directory.query(SELECT_ALL_SQL, (RowCallbackHandler) rs -> loaded.put(rs.getString(1), toPlacement(rs)));
+        placements.putAll(loaded);
+        placements.keySet().retainAll(loaded.keySet());
+    }
+
+    private TenantPlacement load(String tenantId) {
+        TenantPlacement placement = directory.queryForObject(SELECT_SQL, (rs, rowNum) -> toPlacement(rs), tenantId);
+        placements.put(tenantId, placement);
+        return placement;
+    }
+
+    private int initialShard(String tenantId) {
+        Integer configured = properties.getTenants().get(tenantId);
+        if (configured != null && configured >= 0 && configured < shards.size()) {
+            return configured;
+        }
+        return Math.floorMod(tenantId.hashCode(), shards.size());
+    }
+
+    private static TenantPlacement toPlacement(ResultSet rs) throws SQLException {
+        int previous = rs.getInt("previous_shard");
+        return new TenantPlacement(rs.getInt("shard"), rs.wasNull() ? null : previous);
+    }
+
+    @FunctionalInterface
+    public interface ShardWork<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class TenantPlacement {
+        private int shard;
+        // Set while the tenant is being moved off this shard
+        private Integer previousShard;
+    }
+}
@@ -0,0 +1,149 @@
+package com.anishk05.processor.db;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.anishk05.processor.config.SpillProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bulk-loads the spill journal back into events once the database answers again.
+ * EventStore inserts are idempotent on the primary key, so a segment that was partly
+ * loaded before a crash or a second outage can simply be replayed. Spilled events are
+ * announced with {@link SpilledEventsStored} only for rows the load actually inserted, so
+ * a record spilled twice, or one stored before the outage, is counted downstream once.
+ */
+@Component
+@Slf4j
+public class SpillDrainer {
+
+    private static final int MAX_CATCH_UP_ROUNDS = 10;
+
+    private final SpillJournal journal;
+    private final SpillProperties properties;
+    private final EventStore eventStore;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+
+    public SpillDrainer(SpillJournal journal, SpillProperties properties, EventStore eventStore,
+                        ShardRouter shardRouter, ApplicationEventPublisher eventPublisher, DataSource dataSource) {
+        this.journal = journal;
+        this.properties = properties;
+        this.eventStore = eventStore;
+        this.shardRouter = shardRouter;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Scheduled(fixedDelayString = "${processor.spill.drain-interval-ms:2000}")
+    public void drain() {
+        if (!journal.isSpilling() || !databaseAvailable()) {
+            return;
+        }
+
+        try {
+            // Catch up while writers keep appending: each round seals and loads what arrived
+            // during the previous one, until only a small tail is left in the active segment
+            int rounds = 0;
+            do {
+                journal.sealActive();
+                drainSealed();
+                if (++rounds >= MAX_CATCH_UP_ROUNDS && journal.activeRecords() > properties.getDrainBatchSize()) {
+                    // Arrivals keep pace with the drain, carry on at the next tick
+                    return;
+                }
+            } while (journal.activeRecords() > properties.getDrainBatchSize());
+
+            // Handoff: hold new appends, load the tail, then send writers back to the database
+            journal.beginHandoff();
+            boolean drained = false;
+            try {
+                journal.sealActive();
+                drainSealed();
+                drained = true;
+            } finally {
+                if (journal.endHandoff(drained)) {
+                    log.info("Spill journal drained, writing directly to the database again");
+                }
+            }
+        } catch (Exception e) {
+            // Database went away again mid-drain; the segment is replayed on the next attempt
+            log.warn("Failed to drain spill journal: {}", e.getMessage());
+        }
+    }
+
+    private void drainSealed() throws Exception {
+        for (Path segment : journal.sealedSegments()) {
+            long loaded = loadSegment(segment);
+            journal.deleteSegment(segment);
+            log.info("Drained {} spilled events from {}", loaded, segment.getFileName());
+        }
+    }
+
+    private long loadSegment(Path segment) throws Exception {
+        List<SpillJournal.SpilledEvent> batch = new ArrayList<>(properties.getDrainBatchSize());
+        long records = journal.readSegment(segment, spilled -> {
+            batch.add(spilled);
+            if (batch.size() >= properties.getDrainBatchSize()) {
+                saveBatch(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            saveBatch(batch);
+        }
+        return records;
+    }
+
+    // Same write path (and storage policy) as direct writes
+    private void saveBatch(List<SpillJournal.SpilledEvent> batch) {
+        Set<UUID> inserted;
+        try {
+            inserted = eventStore.insertAll(batch.stream().map(SpillJournal.SpilledEvent::getEvent).toList());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Spilled payload is not serializable", e);
+        }
+        List<SpillJournal.SpilledEvent> stored = new ArrayList<>(inserted.size());
+        for (SpillJournal.SpilledEvent spilled : batch) {
+            // remove: a record spilled twice within the batch is announced once
+            if (inserted.remove(spilled.getEvent().getId())) {
+                stored.add(spilled);
+            }
+        }
+        if (!stored.isEmpty()) {
+            eventPublisher.publishEvent(new SpilledEventsStored(stored));
+        }
+    }
+
+    private boolean databaseAvailable() {
+        try {
+            // A segment mixes tenants, so every shard has to be back
+            shardRouter.scatter(() -> jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+            return true;
+        } catch (Exception e) {
+            log.debug("Database still unavailable: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Spilled events whose rows the drainer has just inserted.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class SpilledEventsStored {
+        private List<SpillJournal.SpilledEvent> events;
+    }
+}
@@ -0,0 +1,305 @@
+package com.anishk05.processor.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.SpillProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal for events that could not be written to PostgreSQL.
+ * Segments are preallocated, memory-mapped files; each record is laid out as
+ * [length:int][crc32:int][json bytes] and a zero length marks the end of a segment.
+ * A record keeps the Kafka partition the event came from, so the drainer can feed it to
+ * partition-scoped state once it is actually stored.
+ * Once anything has been spilled, all new events go to the journal until
+ * {@link SpillDrainer} has loaded it back, which keeps the drain order stable. The switch
+ * back to the database is a short handoff during which appends wait.
+ */
+@Component
+@Slf4j
+public class SpillJournal {
+
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    private final SpillProperties properties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Deque<Path> sealedSegments = new ArrayDeque<>();
+
+    private Path directory;
+    private long segmentSize;
+    private long nextSequence;
+    private Segment active;
+    private volatile boolean spilling;
+    private boolean handoff;
+
+    public SpillJournal(SpillProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public synchronized void init() throws IOException {
+        directory = Paths.get(properties.getDirectory());
+        segmentSize = (long) properties.getSegmentSizeMb() * 1024 * 1024;
+        Files.createDirectories(directory);
+
+        // Segments left over from a previous run are drained before anything else
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(SpillJournal::isSegment).sorted().forEach(sealedSegments::add);
+        }
+        for (Path segment : sealedSegments) {
+            nextSequence = Math.max(nextSequence, sequenceOf(segment) + 1);
+        }
+        if (!sealedSegments.isEmpty()) {
+            spilling = true;
+            log.warn("Found {} spill segment(s) from a previous run, events will be journaled until drained",
+                    sealedSegments.size());
+        }
+
+        Gauge.builder("processor.spill.active", this, j -> j.spilling ? 1 : 0).register(meterRegistry);
+        Gauge.builder("processor.spill.segments", this, SpillJournal::segmentCount).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public boolean isSpilling() {
+        return spilling;
+    }
+
+    /**
+     * Journals the event if spill mode is still on. Returns false once the drainer has handed
+     * writes back to the database, in which case the caller writes it there instead.
+     */
+    public synchronized boolean appendIfSpilling(SpilledEvent event) throws IOException {
+        awaitHandoff();
+        if (!spilling) {
+            return false;
+        }
+        append(event);
+        return true;
+    }
+
+    public synchronized void append(SpilledEvent event) throws IOException {
+        awaitHandoff();
+        byte[] bytes = objectMapper.writeValueAsBytes(event);
+        int required = HEADER_BYTES + bytes.length;
+        // Keep room for the zero-length end marker
+        if (required + 4 > segmentSize) {
+            throw new IOException("Event of " + bytes.length + " bytes does not fit in a spill segment");
+        }
+        if (active == null || active.buffer.remaining() < required + 4) {
+            rotate();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        active.buffer.putInt(bytes.length);
+        active.buffer.putInt((int) crc.getValue());
+        active.buffer.put(bytes);
+        active.records++;
+        active.dirty = true;
+
+        if (!spilling) {
+            spilling = true;
+            log.warn("Database unavailable, spilling events to {}", directory.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Flushes appended records to disk. Offsets must only be committed after this returns.
+     */
+    public synchronized void sync() {
+        if (active != null && active.dirty) {
+            active.buffer.force();
+            active.dirty = false;
+        }
+    }
+
+    /**
+     * Closes the active segment so the drainer can pick it up.
+     */
+    public synchronized void sealActive() throws IOException {
+        if (active == null) {
+            return;
+        }
+        if (active.records == 0) {
+            Path empty = active.path;
+            active.close();
+            active = null;
+            Files.deleteIfExists(empty);
+            return;
+        }
+        active.buffer.force();
+        active.close();
+        sealedSegments.add(active.path);
+        active = null;
+    }
+
+    public synchronized List<Path> sealedSegments() {
+        return new ArrayList<>(sealedSegments);
+    }
+
+    public synchronized void deleteSegment(Path segment) throws IOException {
+        sealedSegments.remove(segment);
+        Files.deleteIfExists(segment);
+    }
+
+    public synchronized int activeRecords() {
+        return active == null ? 0 : active.records;
+    }
+
+    /**
+     * Holds back new appends so the drainer can load the last segment and switch writers
+     * back to the database without anything landing in the journal behind it.
+     */
+    public synchronized void beginHandoff() {
+        handoff = true;
+    }
+
+    /**
+     * Releases held appends. Spill mode ends if the handoff drained everything, in which
+     * case the held writers go straight to the database.
+     */
+    public synchronized boolean endHandoff(boolean drained) {
+        handoff = false;
+        boolean exited = drained && sealedSegments.isEmpty() && active == null;
+        if (exited) {
+            spilling = false;
+        }
+        notifyAll();
+        return exited;
+    }
+
+    /**
+     * Reads every intact record of a sealed segment. Reading stops at the end marker
+     * or at the first record whose checksum does not match (a torn tail write).
+     */
+    public long readSegment(Path segment, Consumer<SpilledEvent> consumer) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - 4) {
+                    break;
+                }
+                int expectedCrc = buffer.getInt();
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if ((int) crc.getValue() != expectedCrc) {
+                    log.warn("Checksum mismatch in {} after {} records, ignoring the rest of the segment",
+                            segment.getFileName(), records);
+                    break;
+                }
+                consumer.accept(objectMapper.readValue(bytes, SpilledEvent.class));
+                records++;
+            }
+        }
+        return records;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.close();
+            active = null;
+        }
+    }
+
+    private void awaitHandoff() throws IOException {
+        while (handoff) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the spill handoff", e);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.close();
+            sealedSegments.add(active.path);
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        log.debug("Opened spill segment {}", path.getFileName());
+    }
+
+    private synchronized int segmentCount() {
+        return sealedSegments.size() + (active == null ? 0 : 1);
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SpilledEvent {
+        private EventEntity event;
+        private String topic;
+        private int partition;
+    }
+
+    private static class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int records;
+        boolean dirty;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
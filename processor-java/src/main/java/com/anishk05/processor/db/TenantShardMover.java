@@ -0,0 +1,396 @@
+package com.anishk05.processor.db;
+
+import com.anishk05.processor.api.TenantMoveStatus;
+import com.anishk05.processor.config.ShardingProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves a tenant's events to another shard while it keeps writing.
+ *
+ * The directory is switched first, so new events go to the target once every processor
+ * has refreshed it. Existing rows are then copied until a pass finds nothing new, the old
+ * shard's relay is left to publish the tenant's pending outbox rows, and only rows whose
+ * id is confirmed on the target are deleted from the old shard. A processor still writing
+ * to the old shard on a stale directory therefore never loses rows; they are picked up by
+ * the next round. Every step can be repeated, so a move that failed halfway is resumed by
+ * starting it again.
+ * Progress is written to tenant_shard_moves on shard 0, so every processor reports the
+ * same moves and a move whose processor stopped heartbeating can be restarted elsewhere.
+ */
+@Component
+@Slf4j
+public class TenantShardMover {
+
+    // Copy/drain/delete rounds before giving up on writers that keep using the old shard
+    private static final int MAX_ROUNDS = 5;
+
+    private static final String SELECT_BATCH_SQL =
+            "SELECT id, tenant_id, event_id, idempotency_key, event_type, schema_version, occurred_at, " +
+            "received_at, processed_at, payload::text AS payload, status, payload_codec " +
+            "FROM events WHERE tenant_id = ? AND (idempotency_key, id) > (?, ?) " +
+            "ORDER BY idempotency_key, id LIMIT ?";
+
+    private static final String SELECT_IDS_SQL =
+            "SELECT id, idempotency_key FROM events WHERE tenant_id = ? AND (idempotency_key, id) > (?, ?) " +
+            "ORDER BY idempotency_key, id LIMIT ?";
+
+    // Keyset paging starts below every row: no event id is the nil UUID, derived or random
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    private static final String SELECT_EXISTING_SQL = "SELECT id FROM events WHERE id = ANY(?)";
+
+    private static final String SELECT_BLOBS_SQL =
+            "SELECT event_id, tenant_id, codec, original_size, stored_size, data " +
+            "FROM event_payload_blobs WHERE event_id = ANY(?)";
+
+    private static final String COUNT_OUTBOX_SQL = "SELECT COUNT(*) FROM event_outbox WHERE tenant_id = ?";
+
+    private static final String COUNT_EVENTS_SQL = "SELECT COUNT(*) FROM events WHERE tenant_id = ?";
+
+    // Blobs and outbox rows go with their events through ON DELETE CASCADE
+    private static final String DELETE_BATCH_SQL = "DELETE FROM events WHERE id = ANY(?)";
+
+    // Takes the tenant's move row unless another processor's move of it is still heartbeating
+    private static final String CLAIM_MOVE_SQL =
+            "INSERT INTO tenant_shard_moves (tenant_id, from_shard, to_shard, phase, copied, deleted, " +
+            "started_at, updated_at, error) VALUES (?, ?, ?, ?, 0, 0, ?, ?, NULL) " +
+            "ON CONFLICT (tenant_id) DO UPDATE SET from_shard = EXCLUDED.from_shard, to_shard = EXCLUDED.to_shard, " +
+            "phase = EXCLUDED.phase, copied = 0, deleted = 0, started_at = EXCLUDED.started_at, " +
+            "updated_at = EXCLUDED.updated_at, error = NULL " +
+            "WHERE tenant_shard_moves.phase IN ('done', 'failed') OR tenant_shard_moves.updated_at < ? " +
+            "RETURNING tenant_id";
+
+    // Matching started_at keeps a move that lost its claim from overwriting the one that took it
+    private static final String UPDATE_MOVE_SQL =
+            "UPDATE tenant_shard_moves SET phase = ?, copied = ?, deleted = ?, updated_at = ?, error = ? " +
+            "WHERE tenant_id = ? AND started_at = ?";
+
+    private static final String SELECT_MOVES_SQL =
+            "SELECT tenant_id, from_shard, to_shard, phase, copied, deleted, started_at, updated_at, error " +
+            "FROM tenant_shard_moves ORDER BY started_at DESC";
+
+    private final ShardRouter shardRouter;
+    private final ShardingProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService executor;
+    // Moves running on this processor
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public TenantShardMover(ShardRouter shardRouter, ShardingProperties properties, DataSource dataSource) {
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "tenant-shard-mover");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts moving the tenant to the target shard, or resumes an interrupted move to it.
+     */
+    public synchronized TenantMoveStatus move(String tenantId, int target) {
+        if (!shardRouter.isSharded()) {
+            throw new IllegalArgumentException("Sharding is disabled");
+        }
+        if (target < 0 || target >= shardRouter.shardCount()) {
+            throw new IllegalArgumentException("No shard " + target + ", there are " + shardRouter.shardCount());
+        }
+        if (running.contains(tenantId)) {
+            throw new IllegalStateException("Tenant " + tenantId + " is already being moved");
+        }
+
+        List<Integer> shards = shardRouter.readShardsFor(tenantId);
+        int source;
+        if (shards.size() > 1) {
+            if (shards.get(0) != target) {
+                throw new IllegalStateException("Tenant " + tenantId + " is being moved to shard " + shards.get(0)
+                        + "; finish that move first");
+            }
+            source = shards.get(1);
+        } else {
+            if (shards.get(0) == target) {
+                throw new IllegalArgumentException("Tenant " + tenantId + " is already on shard " + target);
+            }
+            source = shards.get(0);
+        }
+
+        Move move = new Move(tenantId, source, target);
+        if (!claim(move)) {
+            throw new IllegalStateException("Tenant " + tenantId + " is already being moved");
+        }
+        if (shards.size() == 1) {
+            shardRouter.assign(tenantId, target, source);
+        }
+        running.add(tenantId);
+        executor.submit(() -> run(move));
+        return move.toStatus();
+    }
+
+    /**
+     * Moves started on any processor, most recent first.
+     */
+    public List<TenantMoveStatus> getMoves() {
+        return shardRouter.onShard(0, () -> jdbcTemplate.query(SELECT_MOVES_SQL, (rs, rowNum) ->
+                TenantMoveStatus.builder()
+                        .tenantId(rs.getString("tenant_id"))
+                        .fromShard(rs.getInt("from_shard"))
+                        .toShard(rs.getInt("to_shard"))
+                        .phase(rs.getString("phase"))
+                        .copied(rs.getLong("copied"))
+                        .deleted(rs.getLong("deleted"))
+                        .startedAt(rs.getTimestamp("started_at").toLocalDateTime().toString())
+                        .updatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString())
+                        .error(rs.getString("error"))
+                        .build()));
+    }
+
+    private boolean claim(Move move) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp staleBefore = Timestamp.valueOf(now.minus(Duration.ofMillis(properties.getMoveHeartbeatTimeoutMs())));
+        List<String> claimed = shardRouter.onShard(0, () -> jdbcTemplate.queryForList(CLAIM_MOVE_SQL, String.class,
+                move.tenantId, move.source, move.target, move.phase,
+                Timestamp.valueOf(move.startedAt), Timestamp.valueOf(now), staleBefore));
+        return !claimed.isEmpty();
+    }
+
+    private void save(Move move) {
+        int updated = shardRouter.onShard(0, () -> jdbcTemplate.update(UPDATE_MOVE_SQL,
+                move.phase, move.copied, move.deleted, Timestamp.valueOf(LocalDateTime.now()), move.error,
+                move.tenantId, Timestamp.valueOf(move.startedAt)));
+        if (updated == 0) {
+            throw new IllegalStateException("Move of tenant " + move.tenantId + " was taken over by another processor");
+        }
+    }
+
+    private void enter(Move move, String phase) {
+        move.phase = phase;
+        save(move);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Move move) {
+        try {
+            // Until every processor has seen the new shard, writes may still reach the old one
+            long writersSeen = System.currentTimeMillis() + 2 * properties.getDirectoryRefreshMs();
+            for (long left; (left = writersSeen - System.currentTimeMillis()) > 0; ) {
+                Thread.sleep(Math.min(left, 5000));
+                save(move);
+            }
+
+            for (int round = 1; ; round++) {
+                enter(move, "copying");
+                while (copy(move) > 0) {
+                    // Until a pass finds nothing the target does not have yet
+                }
+
+                enter(move, "draining_outbox");
+                awaitOutboxDrained(move);
+
+                enter(move, "deleting");
+                delete(move);
+
+                Long left = shardRouter.onShard(move.source, () ->
+                        jdbcTemplate.queryForObject(COUNT_EVENTS_SQL, Long.class, move.tenantId));
+                if (left == null || left == 0) {
+                    break;
+                }
+                if (round >= MAX_ROUNDS) {
+                    throw new IllegalStateException(left + " events still being written to shard " + move.source
+                            + "; a processor may be using a stale shard directory");
+                }
+                log.warn("{} events of tenant {} arrived on shard {} during the move, copying again",
+                        left, move.tenantId, move.source);
+            }
+
+            shardRouter.assign(move.tenantId, move.target, null);
+            enter(move, "done");
+            log.info("Moved tenant {} from shard {} to shard {} ({} events)",
+                    move.tenantId, move.source, move.target, move.copied);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            move.error = e.getMessage();
+            move.phase = "failed";
+            log.error("Moving tenant {} to shard {} failed, start the move again to resume: {}",
+                    move.tenantId, move.target, e.getMessage(), e);
+            try {
+                save(move);
+            } catch (Exception saveFailure) {
+                log.warn("Could not record failed move of tenant {}: {}", move.tenantId, saveFailure.getMessage());
+            }
+        } finally {
+            running.remove(move.tenantId);
+        }
+    }
+
+    /**
+     * One keyset pass over the source, inserting the rows the target does not have yet.
+     *
+     * @return number of rows copied
+     */
+    private long copy(Move move) {
+        long copiedThisPass = 0;
+        String afterKey = "";
+        UUID afterId = FIRST_ID;
+        while (true) {
+            String lastKey = afterKey;
+            UUID lastId = afterId;
+            List<Object[]> page = shardRouter.onShard(move.source, () ->
+                    jdbcTemplate.query(SELECT_BATCH_SQL, (rs, rowNum) -> new Object[]{
+                            rs.getObject("id"), rs.getString("tenant_id"), rs.getString("event_id"),
+                            rs.getString("idempotency_key"), rs.getString("event_type"), rs.getInt("schema_version"),
+                            rs.getTimestamp("occurred_at"), rs.getTimestamp("received_at"),
+                            rs.getTimestamp("processed_at"), rs.getString("payload"), rs.getString("status"),
+                            rs.getString("payload_codec")
+                    }, move.tenantId, lastKey, lastId, properties.getMoveBatchSize()));
+            if (page.isEmpty()) {
+                return copiedThisPass;
+            }
+            // Idempotency keys are not unique, so the id breaks ties across page boundaries
+            Object[] last = page.get(page.size() - 1);
+            afterKey = (String) last[3];
+            afterId = (UUID) last[0];
+
+            Set<UUID> present = existingOn(move.target, page.stream().map(row -> (UUID) row[0]).toList());
+            List<Object[]> rows = page.stream().filter(row -> !present.contains((UUID) row[0])).toList();
+            if (rows.isEmpty()) {
+                continue;
+            }
+
+            UUID[] offloaded = rows.stream()
+                    .filter(row -> row[11] != null)
+                    .map(row -> (UUID) row[0])
+                    .toArray(UUID[]::new);
+            List<Object[]> blobs = offloaded.length == 0 ? List.of() : shardRouter.onShard(move.source, () ->
+                    jdbcTemplate.query(SELECT_BLOBS_SQL, ps -> {
+                        Array ids = ps.getConnection().createArrayOf("uuid", offloaded);
+                        ps.setArray(1, ids);
+                    }, (rs, rowNum) -> new Object[]{
+                            rs.getObject("event_id"), rs.getString("tenant_id"), rs.getString("codec"),
+                            rs.getInt("original_size"), rs.getInt("stored_size"), rs.getBytes("data")
+                    }));
+
+            // No outbox rows: these events were published, or are about to be, from the old shard
+            shardRouter.inTransaction(move.target, () -> {
+                jdbcTemplate.batchUpdate(EventStore.INSERT_SQL, rows);
+                if (!blobs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(EventStore.INSERT_BLOB_SQL, blobs);
+                }
+                return null;
+            });
+
+            move.copied += rows.size();
+            copiedThisPass += rows.size();
+            save(move);
+        }
+    }
+
+    private void awaitOutboxDrained(Move move) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + properties.getMoveOutboxDrainTimeoutMs();
+        while (true) {
+            Long pending = shardRouter.onShard(move.source, () ->
+                    jdbcTemplate.queryForObject(COUNT_OUTBOX_SQL, Long.class, move.tenantId));
+            if (pending == null || pending == 0) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException(pending + " outbox rows still unpublished on shard " + move.source);
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    /**
+     * Deletes, page by page, the source rows whose id is present on the target. Rows written
+     * to the source after they were last copied stay put for the next round.
+     */
+    private void delete(Move move) {
+        String afterKey = "";
+        UUID afterId = FIRST_ID;
+        while (true) {
+            String lastKey = afterKey;
+            UUID lastId = afterId;
+            List<Object[]> page = shardRouter.onShard(move.source, () ->
+                    jdbcTemplate.query(SELECT_IDS_SQL, (rs, rowNum) -> new Object[]{
+                            rs.getObject("id"), rs.getString("idempotency_key")
+                    }, move.tenantId, lastKey, lastId, properties.getMoveBatchSize()));
+            if (page.isEmpty()) {
+                return;
+            }
+            Object[] last = page.get(page.size() - 1);
+            afterKey = (String) last[1];
+            afterId = (UUID) last[0];
+
+            Set<UUID> confirmed = existingOn(move.target, page.stream().map(row -> (UUID) row[0]).toList());
+            if (confirmed.isEmpty()) {
+                continue;
+            }
+            UUID[] ids = confirmed.toArray(UUID[]::new);
+            int deleted = shardRouter.inTransaction(move.source, () ->
+                    jdbcTemplate.update(DELETE_BATCH_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids))));
+            move.deleted += deleted;
+            save(move);
+        }
+    }
+
+    private Set<UUID> existingOn(int shard, List<UUID> ids) {
+        UUID[] array = ids.toArray(UUID[]::new);
+        List<UUID> found = shardRouter.onShard(shard, () ->
+                jdbcTemplate.query(SELECT_EXISTING_SQL, ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", array)),
+                        (rs, rowNum) -> rs.getObject(1, UUID.class)));
+        return new HashSet<>(found);
+    }
+
+    private static class Move {
+        final String tenantId;
+        final int source;
+        final int target;
+        // Millisecond precision survives the round trip through the TIMESTAMP column
+        final LocalDateTime startedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        volatile String phase = "waiting_for_writers";
+        volatile long copied;
+        volatile long deleted;
+        volatile String error;
+
+        Move(String tenantId, int source, int target) {
+            this.tenantId = tenantId;
+            this.source = source;
+            this.target = target;
+        }
+
+        TenantMoveStatus toStatus() {
+            return TenantMoveStatus.builder()
+                    .tenantId(tenantId)
+                    .fromShard(source)
+                    .toShard(target)
+                    .phase(phase)
+                    .copied(copied)
+                    .deleted(deleted)
+                    .startedAt(startedAt.toString())
+                    .updatedAt(LocalDateTime.now().toString())
+                    .error(error)
+                    .build();
+        }
+    }
+}
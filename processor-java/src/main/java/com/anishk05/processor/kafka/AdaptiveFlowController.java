@@ -0,0 +1,195 @@
+package com.anishk05.processor.kafka;
+
+import com.anishk05.processor.config.FlowControlProperties;
+import com.anishk05.processor.db.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adapts consumption to database health.
+ * Each sample looks at Hikari threads waiting for a connection, mean processing latency
+ * and the error rate since the previous sample. Congestion halves the effective batch size,
+ * healthy samples grow it linearly (AIMD), and saturation pauses the listener container
+ * so the consumer keeps polling (and heartbeating) without fetching more records. While
+ * paused the pools are probed directly, since no records means no latency or error signal.
+ * Backpressure is for the whole container, not per partition: every assigned partition
+ * is paused and resumed together, since the signals are pool-wide and a slow shard
+ * cannot be told apart by the partitions that feed it.
+ */
+@Component
+@Slf4j
+public class AdaptiveFlowController {
+
+    private final FlowControlProperties properties;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ShardRouter shardRouter;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    private volatile int batchLimit;
+    private volatile boolean paused;
+    private int healthySamples;
+
+    public AdaptiveFlowController(FlowControlProperties properties,
+                                  KafkaListenerEndpointRegistry listenerRegistry,
+                                  ShardRouter shardRouter,
+                                  MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.listenerRegistry = listenerRegistry;
+        this.shardRouter = shardRouter;
+        this.batchLimit = properties.getMaxBatchSize();
+
+        Gauge.builder("processor.flow.batch.limit", this, c -> c.batchLimit).register(meterRegistry);
+        Gauge.builder("processor.flow.paused", this, c -> c.paused ? 1 : 0).register(meterRegistry);
+    }
+
+    public int currentBatchLimit() {
+        return properties.isEnabled() ? batchLimit : Integer.MAX_VALUE;
+    }
+
+    public void recordProcessed(long elapsedNanos) {
+        processed.increment();
+        latencyNanos.add(elapsedNanos);
+    }
+
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${processor.flow-control.interval-ms:500}")
+    public synchronized void sample() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        long count = processed.sumThenReset();
+        long errors = failures.sumThenReset();
+        long totalNanos = latencyNanos.sumThenReset();
+
+        int pendingThreads = pendingConnectionThreads();
+        double meanLatencyMs = count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos) / (double) count;
+        double errorRate = count == 0 ? 0 : Math.min(1.0, errors / (double) count);
+
+        boolean saturated = pendingThreads >= properties.getPendingThreadsPause()
+                || errorRate >= properties.getErrorRatePause();
+        // While paused nothing is processed, so the counters above look healthy by default;
+        // only a successful probe of every pool counts as a healthy sample
+        boolean probeFailed = paused && !probePools();
+        boolean congested = saturated
+                || probeFailed
+                || pendingThreads >= properties.getPendingThreadsHigh()
+                || meanLatencyMs > properties.getLatencyTargetMs()
+                || errorRate > properties.getErrorRateHigh();
+
+        if (congested) {
+            // Multiplicative decrease
+            healthySamples = 0;
+            int reduced = (int) (batchLimit * properties.getMultiplicativeDecrease());
+            batchLimit = Math.max(properties.getMinBatchSize(), reduced);
+            log.debug("Database congested (pending={}, latency={}ms, errors={}), batch limit now {}",
+                    pendingThreads, String.format("%.1f", meanLatencyMs), String.format("%.2f", errorRate), batchLimit);
+        } else {
+            // Additive increase
+            healthySamples++;
+            batchLimit = Math.min(properties.getMaxBatchSize(), batchLimit + properties.getAdditiveIncrease());
+        }
+
+        if (saturated && !paused) {
+            setPaused(true);
+            log.warn("Database saturated (pending={}, errorRate={}), pausing raw event consumption",
+                    pendingThreads, String.format("%.2f", errorRate));
+        } else if (paused && healthySamples >= properties.getResumeAfterHealthySamples()) {
+            // Resume at the floor and let additive increase probe upwards again
+            batchLimit = properties.getMinBatchSize();
+            setPaused(false);
+            log.info("Database recovered, resuming raw event consumption");
+        }
+    }
+
+    private void setPaused(boolean pause) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(RawEventConsumer.LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        if (pause) {
+            container.pause();
+        } else {
+            container.resume();
+        }
+        paused = pause;
+    }
+
+    private boolean probePools() {
+        for (DataSource dataSource : shardRouter.dataSources()) {
+            if (!probe(dataSource)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Healthy when the pool has spare connections, nobody is waiting for one, and a trivial
+     * query comes back within the latency target.
+     */
+    private boolean probe(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                if (pool != null && (pool.getThreadsAwaitingConnection() > 0
+                        || pool.getActiveConnections() >= hikari.getMaximumPoolSize())) {
+                    return false;
+                }
+            }
+            long start = System.nanoTime();
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(properties.getProbeTimeoutSeconds());
+                statement.execute("SELECT 1");
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) <= properties.getLatencyTargetMs();
+        } catch (Exception e) {
+            log.debug("Database probe failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // Summed over the shard pools: a batch mixes tenants, so one saturated shard holds it up
+    private int pendingConnectionThreads() {
+        int pending = 0;
+        for (DataSource dataSource : shardRouter.dataSources()) {
+            pending += pendingConnectionThreads(dataSource);
+        }
+        return pending;
+    }
+
+    private int pendingConnectionThreads(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                if (pool != null) {
+                    return pool.getThreadsAwaitingConnection();
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Could not read Hikari pool stats: {}", e.getMessage());
+        }
+        return 0;
+    }
+}
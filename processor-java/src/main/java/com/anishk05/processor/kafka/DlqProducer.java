@@ -1,39 +1,62 @@
 package com.anishk05.processor.kafka;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.anishk05.processor.service.DlqMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class DlqProducer {
 
     private static final String DLQ_TOPIC = "events.dlq";
+    private static final long SEND_TIMEOUT_SECONDS = 30;
     
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
-    public void sendToDlq(String originalMessage, String reason, String tenantId) {
+    /**
+     * Publishes a batch's DLQ messages and waits until the broker has them.
+     * Must be called on the listener thread: when Kafka transactions are enabled the sends
+     * join the container's transaction and commit atomically with the batch's offsets.
+     * Throws if any send fails so the batch is not acknowledged.
+     */
+    public void publishAll(Collection<DlqMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(messages.size());
+        for (DlqMessage message : messages) {
+            try {
+                sends.add(kafkaTemplate.send(DLQ_TOPIC, objectMapper.writeValueAsString(message)));
+                log.warn("Sending message to DLQ. Reason: {}", message.getReason());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize DLQ message: " + e.getMessage(), e);
+            }
+        }
+
         try {
-            DlqMessage dlqMessage = DlqMessage.builder()
-                    .failedAt(java.time.LocalDateTime.now().toString())
-                    .reason(reason)
-                    .original(originalMessage)
-                    .tenantId(tenantId)
-                    .build();
-            
-            String dlqMessageJson = objectMapper.writeValueAsString(dlqMessage);
-            
-            kafkaTemplate.send(DLQ_TOPIC, dlqMessageJson);
-            log.warn("Sent message to DLQ. Reason: {}", reason);
-        } catch (Exception e) {
-            log.error("Failed to send message to DLQ: {}", e.getMessage(), e);
+            CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))
+                    .get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending to DLQ", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to send " + messages.size() + " message(s) to DLQ", e);
         }
     }
 }
-
-
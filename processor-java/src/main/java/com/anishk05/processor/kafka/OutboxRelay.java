@@ -0,0 +1,342 @@
+package com.anishk05.processor.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.OutboxProperties;
+import com.anishk05.processor.db.EventStore;
+import com.anishk05.processor.db.PayloadStoragePolicy;
+import com.anishk05.processor.db.ShardRouter;
+import com.anishk05.processor.service.EventEnvelopeDecoder;
+import com.anishk05.processor.service.ProcessedEventMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes event_outbox rows to events.processed, keyed by tenant so each tenant's
+ * events land on one partition. A batch is claimed (leased) in a short transaction,
+ * published and acknowledged by the broker with no transaction open, and then deleted.
+ * A failed send releases the claim and the batch is sent again, so delivery is
+ * at-least-once with a stable id per event. Rows are claimed with SKIP LOCKED, so
+ * replicas relay disjoint batches concurrently; events.processed carries no ordering
+ * guarantee beyond what each consumer derives from occurred_at and id. With sharded
+ * storage every shard has its own outbox and is relayed in turn.
+ * The relay thread and its producer follow the application context's lifecycle, so they
+ * are not running during an AOT/CDS training run or across a CRaC checkpoint.
+ */
+@Component
+@Slf4j
+public class OutboxRelay implements SmartLifecycle {
+
+    private static final String CLAIM_SQL =
+            "UPDATE event_outbox SET claimed_until = now() + ? * interval '1 millisecond' " +
+            "WHERE seq IN (SELECT seq FROM event_outbox " +
+            "WHERE claimed_until IS NULL OR claimed_until < now() " +
+            "ORDER BY seq LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING seq";
+
+    private static final String SELECT_SQL =
+            "SELECT o.seq, o.created_at, e.id, e.tenant_id, e.event_id, e.idempotency_key, e.event_type, " +
+            "e.schema_version, e.occurred_at, e.received_at, e.processed_at, e.payload::text AS payload, " +
+            "e.payload_codec, b.original_size AS payload_original_size, b.data AS payload_blob " +
+            "FROM event_outbox o " +
+            "JOIN events e ON e.id = o.event_id " +
+            "LEFT JOIN event_payload_blobs b ON b.event_id = e.id " +
+            "WHERE o.seq = ANY(?) " +
+            "ORDER BY o.seq";
+
+    private static final String DELETE_SQL = "DELETE FROM event_outbox WHERE seq = ANY(?)";
+
+    private static final String RELEASE_SQL = "UPDATE event_outbox SET claimed_until = NULL WHERE seq = ANY(?)";
+
+    private final OutboxProperties properties;
+    private final PayloadStoragePolicy payloadStoragePolicy;
+    private final ObjectMapper objectMapper;
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter published;
+    private final Timer lag;
+    private final Semaphore wakeups = new Semaphore(0);
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    private Producer<String, byte[]> producer;
+    private Thread relayThread;
+    private volatile boolean running;
+
+    public OutboxRelay(OutboxProperties properties, PayloadStoragePolicy payloadStoragePolicy,
+                       ObjectMapper objectMapper, ShardRouter shardRouter, DataSource dataSource,
+                       MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.payloadStoragePolicy = payloadStoragePolicy;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.published = Counter.builder("processor.outbox.published").register(meterRegistry);
+        // Commit of the outbox row to broker acknowledgement
+        this.lag = Timer.builder("processor.outbox.lag").register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+
+        // Standalone producer: the relay never runs inside a Kafka transaction, and
+        // batching and compression here only affect events.processed
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getCompressionType());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, properties.getLingerMs());
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, properties.getProducerBatchBytes());
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 5000);
+        producer = new KafkaProducer<>(props);
+
+        running = true;
+        relayThread = new Thread(this::run, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        wakeups.release();
+        try {
+            relayThread.join(properties.getSendTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        producer.close(Duration.ofSeconds(5));
+        relayThread = null;
+        producer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Wakes the relay as soon as a transaction that wrote outbox rows has committed,
+     * instead of waiting for the next poll.
+     */
+    @TransactionalEventListener
+    public void onOutboxAppended(EventStore.OutboxAppended event) {
+        wakeups.release();
+    }
+
+    private void run() {
+        while (running) {
+            int relayed = 0;
+            boolean failed = false;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                try {
+                    relayed = Math.max(relayed, relayBatch(shard));
+                } catch (Exception e) {
+                    // Rows stay in the outbox and are sent again on the next attempt
+                    log.warn("Outbox relay failed on shard {}: {}", shard, e.getMessage());
+                    failed = true;
+                }
+            }
+
+            // A full batch means more is probably waiting
+            if (relayed >= properties.getBatchSize()) {
+                continue;
+            }
+            if (failed) {
+                sleep(properties.getErrorBackoffMs());
+            } else {
+                awaitWakeup();
+            }
+        }
+    }
+
+    private int relayBatch(int shard) {
+        // 1. Claim and read a batch; the lease commits before anything is sent
+        List<OutboxRow> rows = shardRouter.inTransaction(shard, () -> {
+            List<Long> claimed = jdbcTemplate.queryForList(CLAIM_SQL, Long.class,
+                    properties.getClaimLeaseMs(), properties.getBatchSize());
+            if (claimed.isEmpty()) {
+                return List.<OutboxRow>of();
+            }
+            return jdbcTemplate.query(SELECT_SQL, ps -> ps.setArray(1, seqArray(ps, claimed)),
+                    (rs, rowNum) -> toRow(rs));
+        });
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+
+        // 2. Publish with no database transaction open
+        List<Long> seqs = rows.stream().map(row -> row.seq).toList();
+        try {
+            publish(rows);
+        } catch (RuntimeException e) {
+            release(shard, seqs);
+            throw e;
+        }
+
+        // 3. Delete what the broker has acknowledged; if this fails the lease runs out and
+        // the rows are sent again, which at-least-once delivery allows
+        shardRouter.inTransaction(shard, () ->
+                jdbcTemplate.update(DELETE_SQL, ps -> ps.setArray(1, seqArray(ps, seqs))));
+        return rows.size();
+    }
+
+    private void release(int shard, List<Long> seqs) {
+        try {
+            shardRouter.inTransaction(shard, () ->
+                    jdbcTemplate.update(RELEASE_SQL, ps -> ps.setArray(1, seqArray(ps, seqs))));
+        } catch (Exception e) {
+            log.debug("Could not release outbox claim on shard {}, it expires with the lease: {}", shard, e.getMessage());
+        }
+    }
+
+    private static Array seqArray(PreparedStatement ps, List<Long> seqs) throws SQLException {
+        return ps.getConnection().createArrayOf("bigint", seqs.toArray());
+    }
+
+    private void publish(List<OutboxRow> rows) {
+        List<Future<RecordMetadata>> sends = new ArrayList<>(rows.size());
+        for (OutboxRow row : rows) {
+            ProducerRecord<String, byte[]> record =
+                    new ProducerRecord<>(properties.getTopic(), row.message.getTenantId(), row.value);
+            record.headers().add(EventEnvelopeDecoder.CONTENT_TYPE_HEADER,
+                    "application/json".getBytes(StandardCharsets.UTF_8));
+            record.headers().add(EventEnvelopeDecoder.TENANT_HEADER,
+                    row.message.getTenantId().getBytes(StandardCharsets.UTF_8));
+            record.headers().add(EventEnvelopeDecoder.EVENT_TYPE_HEADER,
+                    row.message.getEventType().getBytes(StandardCharsets.UTF_8));
+            sends.add(producer.send(record));
+        }
+        producer.flush();
+
+        long deadline = System.currentTimeMillis() + properties.getSendTimeoutMs();
+        try {
+            for (Future<RecordMetadata> send : sends) {
+                send.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while publishing outbox batch", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to publish outbox batch to " + properties.getTopic(), e);
+        }
+
+        long now = System.currentTimeMillis();
+        for (OutboxRow row : rows) {
+            lag.record(Math.max(0, now - row.createdAt), TimeUnit.MILLISECONDS);
+        }
+        published.increment(rows.size());
+    }
+
+    private OutboxRow toRow(ResultSet rs) throws SQLException {
+        ProcessedEventMessage message = ProcessedEventMessage.builder()
+                .id(rs.getString("id"))
+                .tenantId(rs.getString("tenant_id"))
+                .eventId(rs.getString("event_id"))
+                .idempotencyKey(rs.getString("idempotency_key"))
+                .eventType(rs.getString("event_type"))
+                .schemaVersion(rs.getInt("schema_version"))
+                .occurredAt(timestamp(rs, "occurred_at"))
+                .receivedAt(timestamp(rs, "received_at"))
+                .processedAt(timestamp(rs, "processed_at"))
+                .payload(payload(rs))
+                .build();
+        try {
+            return new OutboxRow(rs.getLong("seq"), rs.getTimestamp("created_at").getTime(), message,
+                    objectMapper.writeValueAsBytes(message));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize outbox event " + message.getId(), e);
+        }
+    }
+
+    // Offloaded payloads are published in full, not as the stub kept in the events row
+    private String payload(ResultSet rs) throws SQLException {
+        String codec = rs.getString("payload_codec");
+        byte[] blob = rs.getBytes("payload_blob");
+        if (codec == null || blob == null) {
+            return rs.getString("payload");
+        }
+        byte[] raw = payloadStoragePolicy.inflateRaw(codec, blob, rs.getInt("payload_original_size"));
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static String timestamp(ResultSet rs, String column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value == null ? null : value.toLocalDateTime().toString();
+    }
+
+    private void awaitWakeup() {
+        try {
+            if (wakeups.tryAcquire(properties.getPollIntervalMs(), TimeUnit.MILLISECONDS)) {
+                // Commits that arrived meanwhile are covered by the next read
+                wakeups.drainPermits();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static class OutboxRow {
+        final long seq;
+        final long createdAt;
+        final ProcessedEventMessage message;
+        final byte[] value;
+
+        OutboxRow(long seq, long createdAt, ProcessedEventMessage message, byte[] value) {
+            this.seq = seq;
+            this.createdAt = createdAt;
+            this.message = message;
+            this.value = value;
+        }
+    }
+}
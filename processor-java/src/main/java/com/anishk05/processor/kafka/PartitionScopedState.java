@@ -0,0 +1,24 @@
+package com.anishk05.processor.kafka;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * In-memory state kept per source partition and handed over on rebalance by
+ * {@link PartitionStateManager}. Snapshots are taken on the consumer thread between
+ * batches, so they line up with the partition's position.
+ */
+public interface PartitionScopedState {
+
+    // Key under which this state's snapshots are stored
+    String stateName();
+
+    // Null when there is nothing to keep for the partition
+    JsonNode snapshot(TopicPartition partition);
+
+    // Called on assignment; snapshot is null when no checkpoint exists
+    void restore(TopicPartition partition, JsonNode snapshot);
+
+    // Called once the partition is revoked (after its final checkpoint) or lost
+    void release(TopicPartition partition);
+}
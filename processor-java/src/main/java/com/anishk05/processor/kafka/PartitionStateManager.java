@@ -0,0 +1,500 @@
+package com.anishk05.processor.kafka;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.StateProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands partition-scoped state over between processor instances.
+ * Every {@link PartitionScopedState} is snapshotted per source partition between batches
+ * (at most once per checkpoint interval, and always when the partition is revoked) into a
+ * local file and a compacted changelog topic, which a background reader tails so its latest
+ * checkpoints are at hand. On assignment the newer of the two is restored; if it was
+ * taken before the committed offset, the consumer seeks back to it and the gap is
+ * replayed into state only (see {@link #isReplay}).
+ */
+@Component
+@Slf4j
+public class PartitionStateManager implements ConsumerAwareRebalanceListener, SmartLifecycle {
+
+    private final StateProperties properties;
+    private final ObjectMapper objectMapper;
+    private final List<PartitionScopedState> states;
+
+    // Next offset to process per owned partition, as of the last completed batch
+    private final Map<TopicPartition, Long> positions = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> lastCheckpointAt = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> replayUntil = new ConcurrentHashMap<>();
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Value("${spring.kafka.consumer.group-id}")
+    private String consumerGroupId;
+
+    private Path directory;
+    private volatile Producer<String, byte[]> changelogProducer;
+    private volatile int changelogPartitions;
+    private volatile ChangelogReader changelogReader;
+
+    public PartitionStateManager(StateProperties properties, ObjectMapper objectMapper,
+                                 List<PartitionScopedState> states) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.states = states;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        directory = Paths.get(properties.getDirectory());
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Opens the changelog producer and reader. Runs with the context lifecycle rather than
+     * at construction, so no connections exist during a CDS training run or at a CRaC
+     * checkpoint, and before the listener containers so assignments find the reader.
+     */
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || changelogReader != null) {
+            return;
+        }
+        // Not the application KafkaTemplate: checkpoints are also written from rebalance
+        // callbacks, outside any Kafka transaction
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 5000);
+        changelogProducer = new KafkaProducer<>(props);
+
+        changelogReader = new ChangelogReader();
+        changelogReader.start();
+    }
+
+    @Override
+    public void stop() {
+        if (changelogReader != null) {
+            changelogReader.shutdown();
+            changelogReader = null;
+        }
+        if (changelogProducer != null) {
+            changelogProducer.close(Duration.ofSeconds(5));
+            changelogProducer = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return changelogReader != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 1;
+    }
+
+    /**
+     * True for records re-read after restoring an older checkpoint. They were fully
+     * processed before, so only partition state should take them in.
+     */
+    public boolean isReplay(ConsumerRecord<?, ?> record) {
+        Long until = replayUntil.get(new TopicPartition(record.topic(), record.partition()));
+        return until != null && record.offset() < until;
+    }
+
+    /**
+     * Called on the consumer thread once a batch (or the processed part of it) is done.
+     */
+    public void afterBatch(List<? extends ConsumerRecord<?, ?>> processed) {
+        if (!properties.isEnabled() || processed.isEmpty()) {
+            return;
+        }
+
+        Set<TopicPartition> touched = new HashSet<>();
+        for (ConsumerRecord<?, ?> record : processed) {
+            TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+            positions.merge(tp, record.offset() + 1, Math::max);
+            touched.add(tp);
+        }
+
+        long now = System.currentTimeMillis();
+        for (TopicPartition tp : touched) {
+            long position = positions.get(tp);
+            replayUntil.computeIfPresent(tp, (k, until) -> position >= until ? null : until);
+            if (now - lastCheckpointAt.getOrDefault(tp, 0L) >= properties.getCheckpointIntervalMs()) {
+                checkpoint(tp, false);
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (TopicPartition tp : partitions) {
+            // Final checkpoint must be durable before the new owner looks for it
+            if (!checkpoint(tp, true)) {
+                log.error("Final checkpoint of {} failed, its state is lost to the next owner", tp);
+            }
+            release(tp);
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        // Someone else may already own these, so no checkpoint
+        partitions.forEach(this::release);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        // One bounded wait per rebalance: the reader is normally tailing the changelog already
+        // and only has to pick up the final checkpoints the previous owners just wrote
+        if (!changelogReader.awaitCaughtUp(changelogEndOffsets(consumer), properties.getRestoreTimeoutMs())) {
+            log.warn("Changelog reader has not caught up, restoring from the checkpoints read so far");
+        }
+
+        for (TopicPartition tp : partitions) {
+            long committed = consumer.position(tp);
+            PartitionCheckpoint checkpoint = newest(readLocal(tp), readChangelog(tp));
+
+            for (PartitionScopedState state : states) {
+                JsonNode snapshot = checkpoint == null ? null : checkpoint.getStates().get(state.stateName());
+                state.restore(tp, snapshot);
+            }
+
+            long position = committed;
+            if (checkpoint != null && checkpoint.getOffset() < committed) {
+                long gap = committed - checkpoint.getOffset();
+                if (gap <= properties.getMaxReplayRecords()) {
+                    consumer.seek(tp, checkpoint.getOffset());
+                    replayUntil.put(tp, committed);
+                    position = checkpoint.getOffset();
+                } else {
+                    log.warn("Checkpoint of {} is {} records behind, not replaying", tp, gap);
+                }
+            }
+            positions.put(tp, position);
+            lastCheckpointAt.put(tp, System.currentTimeMillis());
+            log.info("Assigned {} at offset {}, state restored from {}", tp, committed,
+                    checkpoint == null ? "nothing" : "checkpoint at offset " + checkpoint.getOffset());
+        }
+    }
+
+    private void release(TopicPartition tp) {
+        states.forEach(state -> state.release(tp));
+        positions.remove(tp);
+        lastCheckpointAt.remove(tp);
+        replayUntil.remove(tp);
+    }
+
+    private boolean checkpoint(TopicPartition tp, boolean await) {
+        Long position = positions.get(tp);
+        if (position == null) {
+            return true;
+        }
+
+        Map<String, JsonNode> snapshots = new LinkedHashMap<>();
+        for (PartitionScopedState state : states) {
+            JsonNode snapshot = state.snapshot(tp);
+            if (snapshot != null) {
+                snapshots.put(state.stateName(), snapshot);
+            }
+        }
+        lastCheckpointAt.put(tp, System.currentTimeMillis());
+
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(
+                    new PartitionCheckpoint(tp.topic(), tp.partition(), position, System.currentTimeMillis(), snapshots));
+        } catch (IOException e) {
+            log.warn("Failed to serialize checkpoint of {}: {}", tp, e.getMessage());
+            return false;
+        }
+
+        try {
+            Path file = localFile(tp);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write local checkpoint of {}: {}", tp, e.getMessage());
+        }
+
+        try {
+            int partitions = changelogPartitions();
+            if (partitions == 0) {
+                return false;
+            }
+            var send = changelogProducer.send(new ProducerRecord<>(
+                    properties.getChangelogTopic(), tp.partition() % partitions, changelogKey(tp), bytes));
+            if (await) {
+                send.get(properties.getRestoreTimeoutMs(), TimeUnit.MILLISECONDS);
+            }
+            log.debug("Checkpointed {} at offset {} ({} bytes)", tp, position, bytes.length);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Failed to write changelog checkpoint of {}: {}", tp, e.getMessage());
+            return false;
+        }
+    }
+
+    private PartitionCheckpoint readLocal(TopicPartition tp) {
+        Path file = localFile(tp);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), PartitionCheckpoint.class);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable local checkpoint {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private PartitionCheckpoint readChangelog(TopicPartition tp) {
+        byte[] latest = changelogReader.latest(changelogKey(tp));
+        if (latest == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(latest, PartitionCheckpoint.class);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable changelog checkpoint of {}: {}", tp, e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<TopicPartition, Long> changelogEndOffsets(Consumer<?, ?> consumer) {
+        try {
+            List<PartitionInfo> infos = consumer.partitionsFor(properties.getChangelogTopic());
+            if (infos == null || infos.isEmpty()) {
+                return Map.of();
+            }
+            List<TopicPartition> changelog = new ArrayList<>(infos.size());
+            infos.forEach(info -> changelog.add(new TopicPartition(info.topic(), info.partition())));
+            return consumer.endOffsets(changelog, Duration.ofMillis(properties.getRestoreTimeoutMs()));
+        } catch (Exception e) {
+            log.warn("Could not read changelog end offsets: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private int changelogPartitions() {
+        if (changelogPartitions == 0) {
+            changelogPartitions = changelogProducer.partitionsFor(properties.getChangelogTopic()).size();
+        }
+        return changelogPartitions;
+    }
+
+    // Local and changelog copies can diverge when the partition moved in between
+    private static PartitionCheckpoint newest(PartitionCheckpoint local, PartitionCheckpoint changelog) {
+        if (local == null) {
+            return changelog;
+        }
+        if (changelog == null) {
+            return local;
+        }
+        return changelog.getOffset() > local.getOffset() ? changelog : local;
+    }
+
+    private String changelogKey(TopicPartition tp) {
+        return consumerGroupId + "/" + tp.topic() + "-" + tp.partition();
+    }
+
+    private Path localFile(TopicPartition tp) {
+        return directory.resolve(tp.topic() + "-" + tp.partition() + ".json");
+    }
+
+    /**
+     * Tails the whole changelog on its own thread and keeps the latest checkpoint of each of
+     * this group's partitions, so assignment restores from memory instead of scanning the
+     * topic from the beginning inside the rebalance callback.
+     */
+    private class ChangelogReader implements Runnable {
+
+        private final Map<String, byte[]> latest = new ConcurrentHashMap<>();
+        private final Map<TopicPartition, Long> positions = new HashMap<>();
+        private final Thread thread = new Thread(this, "state-changelog-reader");
+        private volatile boolean running = true;
+        private volatile KafkaConsumer<String, byte[]> reader;
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        byte[] latest(String key) {
+            return latest.get(key);
+        }
+
+        /**
+         * Waits until everything below the given end offsets has been read.
+         */
+        synchronized boolean awaitCaughtUp(Map<TopicPartition, Long> endOffsets, long timeoutMs) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (!caughtUp(endOffsets)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Properties props = new Properties();
+            props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+            props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+            props.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+
+            String prefix = consumerGroupId + "/";
+            try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(props)) {
+                reader = consumer;
+                while (running) {
+                    try {
+                        if (consumer.assignment().isEmpty() && !assign(consumer)) {
+                            Thread.sleep(1000);
+                            continue;
+                        }
+                        for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(500))) {
+                            if (record.key() == null || !record.key().startsWith(prefix)) {
+                                continue;
+                            }
+                            if (record.value() == null) {
+                                latest.remove(record.key());
+                            } else {
+                                latest.put(record.key(), record.value());
+                            }
+                        }
+                        updatePositions(consumer);
+                    } catch (WakeupException e) {
+                        // shutdown
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        log.warn("Changelog reader failed, retrying: {}", e.getMessage());
+                        Thread.sleep(1000);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            KafkaConsumer<String, byte[]> consumer = reader;
+            if (consumer != null) {
+                consumer.wakeup();
+            }
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private boolean assign(KafkaConsumer<String, byte[]> consumer) {
+            List<PartitionInfo> infos = consumer.partitionsFor(properties.getChangelogTopic());
+            if (infos == null || infos.isEmpty()) {
+                return false;
+            }
+            List<TopicPartition> changelog = new ArrayList<>(infos.size());
+            infos.forEach(info -> changelog.add(new TopicPartition(info.topic(), info.partition())));
+            consumer.assign(changelog);
+            consumer.seekToBeginning(changelog);
+            return true;
+        }
+
+        private synchronized void updatePositions(KafkaConsumer<String, byte[]> consumer) {
+            for (TopicPartition tp : consumer.assignment()) {
+                positions.put(tp, consumer.position(tp));
+            }
+            notifyAll();
+        }
+
+        private boolean caughtUp(Map<TopicPartition, Long> endOffsets) {
+            for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+                if (positions.getOrDefault(end.getKey(), 0L) < end.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class PartitionCheckpoint {
+        private String topic;
+        private int partition;
+        // Next offset to process when the snapshot was taken
+        private long offset;
+        private long checkpointedAt;
+        private Map<String, JsonNode> states = new LinkedHashMap<>();
+    }
+}
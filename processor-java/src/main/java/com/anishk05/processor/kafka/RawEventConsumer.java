@@ -1,46 +1,128 @@
 package com.anishk05.processor.kafka;
 
+import com.anishk05.processor.db.SpillJournal;
+import com.anishk05.processor.service.DlqMessage;
 import com.anishk05.processor.service.EventProcessorService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class RawEventConsumer {
 
+    static final String LISTENER_ID = "raw-event-consumer";
+
     private final EventProcessorService eventProcessorService;
+    private final TenantFairScheduler tenantFairScheduler;
+    private final AdaptiveFlowController flowController;
+    private final SpillJournal spillJournal;
+    private final DlqProducer dlqProducer;
+    private final PartitionStateManager partitionStateManager;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+
+    @KafkaListener(id = LISTENER_ID, topics = "events.raw", groupId = "${spring.kafka.consumer.group-id}")
+    public void consume(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment,
+                        Consumer<?, ?> consumer) {
+        log.debug("Received batch of {} messages", records.size());
+
+        // Only take as many records as the database can currently absorb, shared out tenant-fairly
+        // so a noisy tenant cannot fill the whole (possibly reduced) budget
+        Map<ConsumerRecord<String, byte[]>, DlqMessage> failed = new ConcurrentHashMap<>();
+        List<ConsumerRecord<String, byte[]>> deferred = tenantFairScheduler.dispatch(records,
+                flowController.currentBatchLimit(), record -> {
+            log.debug("Processing message from partition {} at offset {}", record.partition(), record.offset());
+            long start = System.nanoTime();
+            try {
+                eventProcessorService.processEvent(record, partitionStateManager.isReplay(record))
+                        .ifPresent(message -> failed.put(record, message));
+            } catch (RuntimeException e) {
+                flowController.recordFailure();
+                throw e;
+            } finally {
+                flowController.recordProcessed(System.nanoTime() - start);
+            }
+        });
+
+        // Offsets can only move past a contiguous prefix per partition, so a deferred record
+        // sends the rest of its partition back too; inserts are idempotent, redelivery is safe
+        Map<TopicPartition, Long> resumeAt = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : deferred) {
+            resumeAt.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::min);
+        }
+        List<ConsumerRecord<String, byte[]>> committed = new ArrayList<>(records.size() - deferred.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Long resume = resumeAt.get(new TopicPartition(record.topic(), record.partition()));
+            if (resume == null || record.offset() < resume) {
+                committed.add(record);
+            }
+        }
+
+        // DLQ sends happen here, on the listener thread, so they join the container's Kafka
+        // transaction (when enabled) and commit atomically with this batch's offsets. Records that
+        // will be redelivered are left out, they reach the DLQ on their next delivery
+        List<DlqMessage> dlq = new ArrayList<>();
+        for (ConsumerRecord<String, byte[]> record : committed) {
+            DlqMessage message = failed.get(record);
+            if (message != null) {
+                dlq.add(message);
+            }
+        }
+        dlqProducer.publishAll(dlq);
 
-    @KafkaListener(topics = "events.raw", groupId = "${spring.kafka.consumer.group-id}")
-    public void consume(
-            @Payload String message,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset,
-            Acknowledgment acknowledgment) {
-        
-        log.debug("Received message from partition {} at offset {}", partition, offset);
-        
-        try {
-            // Process the event
-            eventProcessorService.processEvent(message);
-            
-            // Manually acknowledge after successful processing
-            acknowledgment.acknowledge();
-            
-            log.debug("Successfully processed and acknowledged message at offset {}", offset);
-        } catch (Exception e) {
-            log.error("Failed to process message at offset {}: {}", offset, e.getMessage(), e);
-            // Acknowledge anyway to avoid blocking the consumer
-            // DLQ handling is done inside processEvent
-            acknowledgment.acknowledge();
+        // Anything spilled during this batch must be on disk before offsets are committed
+        spillJournal.sync();
+
+        // Between batches partition state matches the position, so it can be checkpointed
+        partitionStateManager.afterBatch(committed);
+
+        if (!resumeAt.isEmpty()) {
+            requeue(committed, resumeAt, consumer);
+            log.debug("Processed {} of {} messages, requeued {} partition(s)",
+                    records.size() - deferred.size(), records.size(), resumeAt.size());
+            return;
         }
+
+        // Acknowledge the whole batch; with Kafka transactions the offsets go into the transaction
+        acknowledgment.acknowledge();
+
+        log.debug("Processed and acknowledged batch of {} messages", records.size());
     }
-}
 
+    /**
+     * Commits the processed prefix of every partition and re-seeks only the partitions that
+     * still have deferred records. Unlike a batch nack this neither rewinds nor pauses the
+     * partitions that were fully processed.
+     */
+    private void requeue(List<ConsumerRecord<String, byte[]>> committed, Map<TopicPartition, Long> resumeAt,
+                         Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : committed) {
+            offsets.merge(new TopicPartition(record.topic(), record.partition()),
+                    new OffsetAndMetadata(record.offset() + 1),
+                    (a, b) -> a.offset() >= b.offset() ? a : b);
+        }
+        resumeAt.forEach((tp, offset) -> offsets.put(tp, new OffsetAndMetadata(offset)));
 
+        if (kafkaTemplate.inTransaction()) {
+            kafkaTemplate.sendOffsetsToTransaction(offsets, consumer.groupMetadata());
+        } else {
+            consumer.commitSync(offsets);
+        }
+        resumeAt.forEach(consumer::seek);
+    }
+}
@@ -0,0 +1,346 @@
+package com.anishk05.processor.kafka;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.api.TenantSchedulingStats;
+import com.anishk05.processor.config.FairnessProperties;
+import com.anishk05.processor.service.EventEnvelopeDecoder;
+import com.anishk05.processor.service.WireFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Deficit round-robin scheduler for one poll batch.
+ * Records are queued per tenant and dispatched to a shared worker pool so a tenant
+ * flooding a partition cannot delay the other tenants in the same batch. Each turn grants
+ * quantum x weight records of credit, so over a backlog tenants are served in proportion
+ * to their weights.
+ */
+@Component
+@Slf4j
+public class TenantFairScheduler {
+
+    static final String UNKNOWN_TENANT = "unknown";
+
+    private final FairnessProperties properties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService workers;
+    private final Map<String, TenantMetrics> metrics = new ConcurrentHashMap<>();
+    private final Counter unresolvedTenants;
+
+    public TenantFairScheduler(FairnessProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.unresolvedTenants = Counter.builder("processor.tenant.unresolved")
+                .description("Records scheduled as tenant 'unknown' because no tenant_id could be read")
+                .register(meterRegistry);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, properties.getWorkers()), r -> {
+            Thread t = new Thread(r, "tenant-worker-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs the handler for up to budget records, chosen tenant-fairly rather than by position,
+     * and returns once all of them have completed. Returns the records that were not
+     * dispatched, in batch order.
+     */
+    public List<ConsumerRecord<String, byte[]>> dispatch(List<ConsumerRecord<String, byte[]>> records, int budget,
+                                                         Consumer<ConsumerRecord<String, byte[]>> handler) {
+        if (!properties.isEnabled()) {
+            int limit = Math.min(records.size(), Math.max(0, budget));
+            for (ConsumerRecord<String, byte[]> record : records.subList(0, limit)) {
+                runHandler(record, UNKNOWN_TENANT, handler);
+            }
+            return new ArrayList<>(records.subList(limit, records.size()));
+        }
+
+        // 1. Queue records per tenant, keeping first-seen order between tenants
+        Map<String, Deque<ConsumerRecord<String, byte[]>>> queues = new LinkedHashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            String tenantId = extractTenantId(record);
+            queues.computeIfAbsent(tenantId, k -> new ArrayDeque<>()).add(record);
+            metricsFor(tenantId).queueDepth.incrementAndGet();
+        }
+
+        // 2. Deficit round-robin across tenants until the budget is spent or every queue is empty
+        CompletionService<String> completions = new ExecutorCompletionService<>(workers);
+        Rotation rotation = new Rotation(queues.keySet());
+        Map<String, Integer> inFlight = new HashMap<>();
+        int maxInFlight = Math.max(1, properties.getWorkers());
+        int totalInFlight = 0;
+        int unspent = Math.max(0, budget);
+
+        while (true) {
+            // Fill free worker slots, the tenant holding the turn keeps it until its credit is spent.
+            // Opening a turn always dispatches, so only tenants skipped at their cap count as idle
+            int idleTurns = 0;
+            while (unspent > 0 && totalInFlight < maxInFlight && !rotation.isEmpty() && idleTurns < rotation.size()) {
+                String tenantId = rotation.current();
+                Deque<ConsumerRecord<String, byte[]>> queue = queues.get(tenantId);
+                int cap = properties.maxConcurrencyFor(tenantId);
+                int tenantInFlight = inFlight.getOrDefault(tenantId, 0);
+
+                if (!rotation.turnOpen) {
+                    if (tenantInFlight >= cap) {
+                        // Not eligible this round; it earns no credit for a turn it cannot use
+                        rotation.advance(false);
+                        idleTurns++;
+                        continue;
+                    }
+                    rotation.openTurn(Math.max(1, properties.getQuantum()) * properties.weightFor(tenantId));
+                }
+
+                if (rotation.deficit > 0 && !queue.isEmpty() && tenantInFlight < cap) {
+                    ConsumerRecord<String, byte[]> record = queue.poll();
+                    TenantMetrics tenantMetrics = metricsFor(tenantId);
+                    tenantMetrics.queueDepth.decrementAndGet();
+                    tenantMetrics.inFlight.incrementAndGet();
+                    completions.submit(() -> {
+                        runHandler(record, tenantId, handler);
+                        return tenantId;
+                    });
+                    rotation.deficit--;
+                    inFlight.put(tenantId, tenantInFlight + 1);
+                    totalInFlight++;
+                    unspent--;
+                    idleTurns = 0;
+                    continue;
+                }
+
+                // Credit spent, queue drained or cap reached: pass the turn on
+                rotation.advance(queue.isEmpty());
+            }
+
+            // 3. Nothing more can be dispatched right now, wait for a slot to free up
+            if (totalInFlight == 0) {
+                // Queues drained or budget spent
+                break;
+            }
+            String completedTenant = awaitCompletion(completions);
+            inFlight.merge(completedTenant, -1, Integer::sum);
+            totalInFlight--;
+
+            // Drain any other completions without blocking
+            Future<String> done;
+            while ((done = completions.poll()) != null) {
+                inFlight.merge(resultOf(done), -1, Integer::sum);
+                totalInFlight--;
+            }
+        }
+
+        // 4. Hand back whatever the budget did not cover
+        Set<ConsumerRecord<String, byte[]>> leftover = Collections.newSetFromMap(new IdentityHashMap<>());
+        queues.forEach((tenantId, queue) -> {
+            metricsFor(tenantId).queueDepth.addAndGet(-queue.size());
+            leftover.addAll(queue);
+        });
+        List<ConsumerRecord<String, byte[]>> undispatched = new ArrayList<>(leftover.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (leftover.contains(record)) {
+                undispatched.add(record);
+            }
+        }
+        return undispatched;
+    }
+
+    public List<TenantSchedulingStats> getStats() {
+        List<TenantSchedulingStats> stats = new ArrayList<>();
+        metrics.forEach((tenantId, m) -> stats.add(TenantSchedulingStats.builder()
+                .tenantId(tenantId)
+                .weight(properties.weightFor(tenantId))
+                .maxConcurrency(properties.maxConcurrencyFor(tenantId))
+                .queueDepth(m.queueDepth.get())
+                .inFlight(m.inFlight.get())
+                .processed(m.processed.get())
+                .meanLatencyMs(m.latency.mean(TimeUnit.MILLISECONDS))
+                .maxLatencyMs(m.latency.max(TimeUnit.MILLISECONDS))
+                .build()));
+        stats.sort(Comparator.comparing(TenantSchedulingStats::getTenantId));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void runHandler(ConsumerRecord<String, byte[]> record, String tenantId,
+                            Consumer<ConsumerRecord<String, byte[]>> handler) {
+        TenantMetrics tenantMetrics = metricsFor(tenantId);
+        try {
+            handler.accept(record);
+        } catch (Exception e) {
+            log.error("Failed to process message at offset {}: {}", record.offset(), e.getMessage(), e);
+        } finally {
+            if (properties.isEnabled()) {
+                tenantMetrics.inFlight.decrementAndGet();
+            }
+            tenantMetrics.processed.incrementAndGet();
+            // Latency from broker append to completion, so time spent queued behind other tenants counts
+            long latencyMs = Math.max(0, System.currentTimeMillis() - record.timestamp());
+            tenantMetrics.latency.record(latencyMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String awaitCompletion(CompletionService<String> completions) {
+        try {
+            return resultOf(completions.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tenant workers", e);
+        }
+    }
+
+    private String resultOf(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tenant workers", e);
+        } catch (ExecutionException e) {
+            // runHandler never throws, so this only happens on worker pool failures
+            throw new IllegalStateException("Tenant worker failed", e.getCause());
+        }
+    }
+
+    /**
+     * Uses the tenant_id header when the producer set one; otherwise reads tenant_id from the
+     * body, as the leading string of a binary envelope or with a streaming parser for JSON, so
+     * the full document is only bound once, later, by EventProcessorService.
+     */
+    String extractTenantId(ConsumerRecord<String, byte[]> record) {
+        String headerTenant = EventEnvelopeDecoder.header(record.headers(), EventEnvelopeDecoder.TENANT_HEADER);
+        if (headerTenant != null && !headerTenant.isBlank()) {
+            return headerTenant;
+        }
+        String tenantId = readTenantId(record);
+        if (tenantId == null || tenantId.isBlank()) {
+            // Scheduled under the shared "unknown" queue; the decoder sends malformed records to the DLQ
+            unresolvedTenants.increment();
+            return UNKNOWN_TENANT;
+        }
+        return tenantId;
+    }
+
+    private String readTenantId(ConsumerRecord<String, byte[]> record) {
+        byte[] value = record.value();
+        if (value == null) {
+            return null;
+        }
+        try {
+            String contentType = EventEnvelopeDecoder.header(record.headers(), EventEnvelopeDecoder.CONTENT_TYPE_HEADER);
+            if (WireFormat.fromContentType(contentType) == WireFormat.AVRO) {
+                return EventEnvelopeDecoder.avroTenantId(value);
+            }
+            try (JsonParser parser = objectMapper.getFactory().createParser(value)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if ("tenant_id".equals(field) && token == JsonToken.VALUE_STRING) {
+                        return parser.getText();
+                    }
+                    parser.skipChildren();
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Could not read tenant_id at offset {}: {}", record.offset(), e.getMessage());
+        }
+        return null;
+    }
+
+    private TenantMetrics metricsFor(String tenantId) {
+        return metrics.computeIfAbsent(tenantId, id -> new TenantMetrics(id, meterRegistry));
+    }
+
+    /**
+     * Round-robin order of the backlogged tenants plus their deficit counters. Unspent credit
+     * carries over to the tenant's next turn (bounded by one quantum so a tenant held back by
+     * its concurrency cap cannot bank an unbounded burst); an emptied queue forfeits it.
+     */
+    static class Rotation {
+        private final Deque<String> order;
+        private final Map<String, Integer> carried = new HashMap<>();
+        private boolean turnOpen;
+        private int quantum;
+        private int deficit;
+
+        Rotation(Collection<String> tenants) {
+            this.order = new ArrayDeque<>(tenants);
+        }
+
+        boolean isEmpty() {
+            return order.isEmpty();
+        }
+
+        int size() {
+            return order.size();
+        }
+
+        String current() {
+            return order.peekFirst();
+        }
+
+        void openTurn(int quantum) {
+            this.quantum = quantum;
+            this.deficit = carried.getOrDefault(current(), 0) + quantum;
+            this.turnOpen = true;
+        }
+
+        /**
+         * Ends the current tenant's turn and moves the cursor to the next tenant.
+         */
+        void advance(boolean drained) {
+            String tenantId = order.pollFirst();
+            if (drained) {
+                carried.remove(tenantId);
+            } else {
+                if (turnOpen) {
+                    carried.put(tenantId, Math.min(deficit, quantum));
+                }
+                order.addLast(tenantId);
+            }
+            turnOpen = false;
+            deficit = 0;
+        }
+    }
+
+    private static class TenantMetrics {
+        final AtomicLong queueDepth = new AtomicLong();
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicLong processed = new AtomicLong();
+        final Timer latency;
+
+        TenantMetrics(String tenantId, MeterRegistry registry) {
+            Gauge.builder("processor.tenant.queue.depth", queueDepth, AtomicLong::get)
+                    .tag("tenant", tenantId)
+                    .register(registry);
+            Gauge.builder("processor.tenant.in.flight", inFlight, AtomicLong::get)
+                    .tag("tenant", tenantId)
+                    .register(registry);
+            this.latency = Timer.builder("processor.tenant.latency")
+                    .tag("tenant", tenantId)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * All functions merge associatively, so partial results for the same window
+ * (other replicas, restarts) can be combined in the results table.
+ */
+public enum AggregateFunction {
+    @JsonProperty("count")
+    COUNT,
+
+    @JsonProperty("sum")
+    SUM,
+
+    @JsonProperty("min")
+    MIN,
+
+    @JsonProperty("max")
+    MAX;
+
+    public String label(String field) {
+        return this == COUNT ? "count" : name().toLowerCase() + "(" + field + ")";
+    }
+}
@@ -0,0 +1,64 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A continuous aggregation registered through the admin API.
+ * Group-by fields and aggregate fields are tenant_id, event_type, schema_version
+ * or a dotted payload path such as payload.data.count.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregationDefinition {
+
+    @JsonProperty("name")
+    private String name;
+
+    // Optional filters; null matches every tenant / type
+    @JsonProperty("tenant_id")
+    private String tenantId;
+
+    @JsonProperty("event_type")
+    private String eventType;
+
+    @JsonProperty("window")
+    private WindowType window;
+
+    @JsonProperty("size_seconds")
+    private Long sizeSeconds;
+
+    // Sliding windows only; must divide size_seconds
+    @JsonProperty("slide_seconds")
+    private Long slideSeconds;
+
+    @JsonProperty("group_by")
+    private List<String> groupBy;
+
+    @JsonProperty("aggregates")
+    private List<Aggregate> aggregates;
+
+    // How far event time may lag behind the newest event before it is dropped as late
+    @JsonProperty("allowed_lateness_seconds")
+    private Long allowedLatenessSeconds;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Aggregate {
+
+        @JsonProperty("function")
+        private AggregateFunction function;
+
+        // Not used for count
+        @JsonProperty("field")
+        private String field;
+    }
+}
@@ -0,0 +1,650 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.anishk05.processor.config.AggregationProperties;
+import com.anishk05.processor.db.AggregationDefinitionStore;
+import com.anishk05.processor.db.AggregationResult;
+import com.anishk05.processor.db.AggregationResultStore;
+import com.anishk05.processor.db.AggregationWatermark;
+import com.anishk05.processor.kafka.PartitionScopedState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains registered aggregations over event-time windows in memory, fed by
+ * EventProcessorService after enrichment and once the row is written (so redeliveries
+ * are not counted twice). Definitions live in aggregation_definitions and every replica
+ * refreshes its running set from there.
+ *
+ * Windows are kept per source partition. Each partition tracks a watermark of the newest
+ * event time seen minus the allowed lateness; once it has had no input for idle-timeout it
+ * follows the wall clock minus idle-timeout instead, so a backlog is never judged by now.
+ * Windows ending at or before the watermark are final: they are removed from memory and
+ * written to aggregation_results in one batch together with the watermark, and events
+ * that would still fall into them are dropped as late.
+ * Open windows move with their partition on rebalance (see PartitionStateManager).
+ */
+@Service
+@Slf4j
+public class ContinuousAggregationService implements PartitionScopedState {
+
+    static final String STATE_NAME = "aggregation";
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,255}");
+    private static final String PAYLOAD_PREFIX = "payload.";
+    private static final Set<String> ENVELOPE_FIELDS = Set.of("tenant_id", "event_type", "schema_version");
+
+    private final AggregationProperties properties;
+    private final AggregationResultStore resultStore;
+    private final AggregationDefinitionStore definitionStore;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RunningAggregation> aggregations = new ConcurrentHashMap<>();
+
+    public ContinuousAggregationService(AggregationProperties properties, AggregationResultStore resultStore,
+                                        AggregationDefinitionStore definitionStore, ObjectMapper objectMapper,
+                                        MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.resultStore = resultStore;
+        this.definitionStore = definitionStore;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Stores the definition and starts running it here; other replicas pick it up on their
+     * next definition refresh.
+     *
+     * @throws IllegalArgumentException if the definition is invalid
+     * @throws IllegalStateException if the name is taken or the limit is reached
+     */
+    public synchronized AggregationDefinition register(AggregationDefinition definition) {
+        AggregationDefinition normalized = validate(definition);
+        if (aggregations.containsKey(normalized.getName())) {
+            throw new IllegalStateException("Aggregation " + normalized.getName() + " already exists");
+        }
+        if (definitionStore.count() >= properties.getMaxDefinitions()) {
+            throw new IllegalStateException("At most " + properties.getMaxDefinitions() + " aggregations can be registered");
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(normalized);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Definition is not serializable: " + e.getMessage(), e);
+        }
+        if (!definitionStore.insert(normalized.getName(), json)) {
+            throw new IllegalStateException("Aggregation " + normalized.getName() + " already exists");
+        }
+        start(normalized);
+        return normalized;
+    }
+
+    /**
+     * Unregisters an aggregation everywhere; windows that are still open are discarded.
+     */
+    public synchronized boolean remove(String name) {
+        boolean deleted = definitionStore.delete(name);
+        return stop(name) || deleted;
+    }
+
+    /**
+     * Brings the running set in line with aggregation_definitions: starts definitions
+     * registered on other replicas (or before a restart) and stops removed ones.
+     */
+    @Scheduled(fixedDelayString = "${processor.aggregation.definition-refresh-ms:5000}")
+    public synchronized void refreshDefinitions() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Map<String, String> stored;
+        try {
+            stored = definitionStore.findAll();
+        } catch (Exception e) {
+            log.warn("Could not load aggregation definitions: {}", e.getMessage());
+            return;
+        }
+
+        for (String name : new ArrayList<>(aggregations.keySet())) {
+            if (!stored.containsKey(name)) {
+                stop(name);
+            }
+        }
+        stored.forEach((name, json) -> {
+            AggregationDefinition definition;
+            try {
+                definition = validate(objectMapper.readValue(json, AggregationDefinition.class));
+            } catch (Exception e) {
+                log.warn("Skipping stored aggregation {}: {}", name, e.getMessage());
+                return;
+            }
+            RunningAggregation running = aggregations.get(name);
+            if (running != null && running.definition.equals(definition)) {
+                return;
+            }
+            // Removed and registered again under the same name elsewhere
+            stop(name);
+            start(definition);
+        });
+    }
+
+    private void start(AggregationDefinition definition) {
+        aggregations.put(definition.getName(), new RunningAggregation(definition, meterRegistry));
+        log.info("Registered aggregation {}", definition.getName());
+    }
+
+    private boolean stop(String name) {
+        RunningAggregation removed = aggregations.remove(name);
+        if (removed == null) {
+            return false;
+        }
+        removed.meters.forEach(meterRegistry::remove);
+        log.info("Removed aggregation {}, discarded {} open window group(s)", name, removed.openGroups());
+        return true;
+    }
+
+    public List<AggregationDefinition> list() {
+        List<AggregationDefinition> definitions = new ArrayList<>();
+        aggregations.values().forEach(a -> definitions.add(a.definition));
+        definitions.sort(Comparator.comparing(AggregationDefinition::getName));
+        return definitions;
+    }
+
+    public List<AggregationResult> results(String name, LocalDateTime from, LocalDateTime to) {
+        return resultStore.find(name, from, to);
+    }
+
+    /**
+     * Adds one event to every matching aggregation. Called concurrently by tenant workers.
+     */
+    public void accept(KafkaEventWrapper wrapper, LocalDateTime occurredAt, TopicPartition partition) {
+        if (!properties.isEnabled() || aggregations.isEmpty()) {
+            return;
+        }
+
+        long eventTime = occurredAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long now = System.currentTimeMillis();
+        for (RunningAggregation aggregation : aggregations.values()) {
+            if (aggregation.matches(wrapper)) {
+                aggregation.add(wrapper, eventTime, now, partition);
+            }
+        }
+    }
+
+    @Override
+    public String stateName() {
+        return STATE_NAME;
+    }
+
+    @Override
+    public JsonNode snapshot(TopicPartition partition) {
+        ObjectNode root = objectMapper.createObjectNode();
+        for (RunningAggregation aggregation : aggregations.values()) {
+            PartitionWindows windows = aggregation.partitions.get(partition);
+            if (windows != null) {
+                root.set(aggregation.definition.getName(), windows.snapshot());
+            }
+        }
+        return root.isEmpty() ? null : root;
+    }
+
+    /**
+     * Restores open windows, dropping any a previous owner already flushed.
+     */
+    @Override
+    public void restore(TopicPartition partition, JsonNode snapshot) {
+        Map<String, LocalDateTime> flushed;
+        try {
+            flushed = resultStore.findWatermarks(sourcePartition(partition));
+        } catch (Exception e) {
+            log.warn("Could not read aggregation watermarks for {}: {}", partition, e.getMessage());
+            flushed = Map.of();
+        }
+
+        for (RunningAggregation aggregation : aggregations.values()) {
+            String name = aggregation.definition.getName();
+            PartitionWindows windows = new PartitionWindows();
+            LocalDateTime flushedUntil = flushed.get(name);
+            if (flushedUntil != null) {
+                windows.flushedUntil = flushedUntil.toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+            if (snapshot != null && snapshot.has(name)) {
+                windows.restore(snapshot.get(name), aggregation);
+            }
+            aggregation.partitions.put(partition, windows);
+        }
+    }
+
+    @Override
+    public void release(TopicPartition partition) {
+        aggregations.values().forEach(aggregation -> aggregation.partitions.remove(partition));
+    }
+
+    @Scheduled(fixedDelayString = "${processor.aggregation.flush-interval-ms:1000}")
+    public void flush() {
+        if (properties.isEnabled()) {
+            flush(false);
+        }
+    }
+
+    // Open windows are written as the partition's value so far; the new owner restores them
+    // from the checkpoint and its flush of the full window replaces that value
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush(true);
+    }
+
+    private synchronized void flush(boolean all) {
+        long now = System.currentTimeMillis();
+        List<AggregationResult> results = new ArrayList<>();
+        List<AggregationWatermark> watermarks = new ArrayList<>();
+        Map<PartitionWindows, Map<WindowKey, Accumulator>> taken = new HashMap<>();
+        Map<PartitionWindows, Long> advanced = new HashMap<>();
+
+        for (RunningAggregation aggregation : aggregations.values()) {
+            for (Map.Entry<TopicPartition, PartitionWindows> entry : aggregation.partitions.entrySet()) {
+                PartitionWindows windows = entry.getValue();
+                // Excludes a concurrent snapshot, which must not see a window both open and flushed
+                synchronized (windows) {
+                    long watermark = aggregation.watermark(windows, now);
+                    for (WindowKey key : windows.open.keySet()) {
+                        if (!all && key.start + aggregation.sizeMillis > watermark) {
+                            continue;
+                        }
+                        Accumulator accumulator = windows.open.remove(key);
+                        if (accumulator != null) {
+                            taken.computeIfAbsent(windows, w -> new HashMap<>()).put(key, accumulator);
+                            aggregation.toResults(key, accumulator, sourcePartition(entry.getKey()), results);
+                        }
+                    }
+                    // On shutdown open windows are flushed early, so the watermark does not move
+                    if (!all && watermark > windows.flushedUntil && taken.containsKey(windows)) {
+                        advanced.put(windows, watermark);
+                        watermarks.add(new AggregationWatermark(aggregation.definition.getName(),
+                                sourcePartition(entry.getKey()),
+                                LocalDateTime.ofInstant(Instant.ofEpochMilli(watermark), ZoneOffset.UTC)));
+                    }
+                }
+            }
+        }
+        if (results.isEmpty()) {
+            return;
+        }
+
+        // Stable row order so concurrent flushes from other replicas cannot deadlock
+        results.sort(Comparator.comparing(AggregationResult::getAggregationName)
+                .thenComparing(AggregationResult::getWindowStart)
+                .thenComparing(AggregationResult::getGroupKey)
+                .thenComparing(AggregationResult::getAggregate));
+        try {
+            resultStore.flush(results, watermarks);
+            advanced.forEach((windows, watermark) -> windows.flushedUntil = watermark);
+            log.debug("Flushed {} aggregation result(s)", results.size());
+        } catch (Exception e) {
+            // Put the windows back; they are still final and are retried on the next flush
+            log.warn("Failed to flush {} aggregation result(s): {}", results.size(), e.getMessage());
+            taken.forEach((windows, accumulators) -> accumulators.forEach((key, accumulator) ->
+                    windows.open.merge(key, accumulator, (a, b) -> a.merge(b))));
+        }
+    }
+
+    private static String sourcePartition(TopicPartition partition) {
+        return partition.topic() + "-" + partition.partition();
+    }
+
+    private AggregationDefinition validate(AggregationDefinition definition) {
+        if (definition == null || definition.getName() == null || !NAME.matcher(definition.getName()).matches()) {
+            throw new IllegalArgumentException("name must be 1-255 characters of letters, digits, '_', '.' or '-'");
+        }
+        if (definition.getWindow() == null) {
+            throw new IllegalArgumentException("window must be tumbling or sliding");
+        }
+        if (definition.getSizeSeconds() == null || definition.getSizeSeconds() <= 0) {
+            throw new IllegalArgumentException("size_seconds must be positive");
+        }
+
+        long size = definition.getSizeSeconds();
+        Long slide = size;
+        if (definition.getWindow() == WindowType.SLIDING) {
+            slide = definition.getSlideSeconds();
+            if (slide == null || slide <= 0 || slide > size || size % slide != 0) {
+                throw new IllegalArgumentException("slide_seconds must be positive and divide size_seconds");
+            }
+            if (size / slide > properties.getMaxWindowsPerEvent()) {
+                throw new IllegalArgumentException("size_seconds / slide_seconds must not exceed "
+                        + properties.getMaxWindowsPerEvent());
+            }
+        }
+
+        List<String> groupBy = definition.getGroupBy() == null ? List.of() : List.copyOf(definition.getGroupBy());
+        groupBy.forEach(ContinuousAggregationService::checkField);
+
+        if (definition.getAggregates() == null || definition.getAggregates().isEmpty()) {
+            throw new IllegalArgumentException("at least one aggregate is required");
+        }
+        List<AggregationDefinition.Aggregate> aggregates = new ArrayList<>();
+        for (AggregationDefinition.Aggregate aggregate : definition.getAggregates()) {
+            if (aggregate == null || aggregate.getFunction() == null) {
+                throw new IllegalArgumentException("aggregate function must be count, sum, min or max");
+            }
+            if (aggregate.getFunction() == AggregateFunction.COUNT) {
+                aggregates.add(new AggregationDefinition.Aggregate(AggregateFunction.COUNT, null));
+            } else {
+                checkField(aggregate.getField());
+                aggregates.add(new AggregationDefinition.Aggregate(aggregate.getFunction(), aggregate.getField()));
+            }
+        }
+
+        Long lateness = definition.getAllowedLatenessSeconds() == null
+                ? properties.getDefaultAllowedLatenessSeconds() : definition.getAllowedLatenessSeconds();
+        if (lateness < 0) {
+            throw new IllegalArgumentException("allowed_lateness_seconds must not be negative");
+        }
+
+        return definition.toBuilder()
+                .slideSeconds(slide)
+                .groupBy(groupBy)
+                .aggregates(List.copyOf(aggregates))
+                .allowedLatenessSeconds(lateness)
+                .build();
+    }
+
+    private static void checkField(String field) {
+        if (field == null || !(ENVELOPE_FIELDS.contains(field)
+                || (field.startsWith(PAYLOAD_PREFIX) && field.length() > PAYLOAD_PREFIX.length()))) {
+            throw new IllegalArgumentException("Unsupported field " + field
+                    + ", expected tenant_id, event_type, schema_version or payload.<path>");
+        }
+    }
+
+    /**
+     * Reads an envelope field or a dotted payload path; null if absent.
+     */
+    static Object readField(KafkaEventWrapper wrapper, String[] path) {
+        switch (path[0]) {
+            case "tenant_id":
+                return wrapper.getTenantId();
+            case "event_type":
+                return wrapper.getEvent().getEventType();
+            case "schema_version":
+                return wrapper.getEvent().getSchemaVersion();
+            default:
+                Object current = wrapper.getEvent().getPayload();
+                for (int i = 1; i < path.length && current != null; i++) {
+                    current = current instanceof Map<?, ?> map ? map.get(path[i]) : null;
+                }
+                return current;
+        }
+    }
+
+    private final class RunningAggregation {
+        final AggregationDefinition definition;
+        final long sizeMillis;
+        final long slideMillis;
+        final long latenessMillis;
+        final String[][] groupPaths;
+        final AggregateFunction[] functions;
+        final String[][] fieldPaths;
+        final String[] labels;
+
+        final Map<TopicPartition, PartitionWindows> partitions = new ConcurrentHashMap<>();
+        final Counter lateEvents;
+        final Counter droppedGroups;
+        final List<Meter> meters = new ArrayList<>();
+
+        RunningAggregation(AggregationDefinition definition, MeterRegistry registry) {
+            this.definition = definition;
+            this.sizeMillis = definition.getSizeSeconds() * 1000;
+            this.slideMillis = definition.getSlideSeconds() * 1000;
+            this.latenessMillis = definition.getAllowedLatenessSeconds() * 1000;
+            this.groupPaths = definition.getGroupBy().stream().map(f -> f.split("\\.")).toArray(String[][]::new);
+
+            List<AggregationDefinition.Aggregate> aggregates = definition.getAggregates();
+            this.functions = new AggregateFunction[aggregates.size()];
+            this.fieldPaths = new String[aggregates.size()][];
+            this.labels = new String[aggregates.size()];
+            for (int i = 0; i < aggregates.size(); i++) {
+                functions[i] = aggregates.get(i).getFunction();
+                fieldPaths[i] = aggregates.get(i).getField() == null ? null : aggregates.get(i).getField().split("\\.");
+                labels[i] = functions[i].label(aggregates.get(i).getField());
+            }
+
+            String name = definition.getName();
+            this.lateEvents = Counter.builder("processor.aggregation.late.events").tag("aggregation", name).register(registry);
+            this.droppedGroups = Counter.builder("processor.aggregation.dropped.groups").tag("aggregation", name).register(registry);
+            meters.add(lateEvents);
+            meters.add(droppedGroups);
+            meters.add(Gauge.builder("processor.aggregation.open.groups", this, RunningAggregation::openGroups)
+                    .tag("aggregation", name).register(registry));
+        }
+
+        boolean matches(KafkaEventWrapper wrapper) {
+            return (definition.getTenantId() == null || definition.getTenantId().equals(wrapper.getTenantId()))
+                    && (definition.getEventType() == null || definition.getEventType().equals(wrapper.getEvent().getEventType()));
+        }
+
+        long watermark(PartitionWindows windows, long now) {
+            long eventTime = windows.maxEventTime.get();
+            // Only an idle partition follows the wall clock; a backlog or replay is judged by
+            // its own event times, however far behind now they are
+            if (now - windows.lastInputAt >= properties.getIdleTimeoutMs()) {
+                eventTime = Math.max(eventTime, now - properties.getIdleTimeoutMs());
+            }
+            return eventTime == Long.MIN_VALUE ? Long.MIN_VALUE : eventTime - latenessMillis;
+        }
+
+        int openGroups() {
+            int groups = 0;
+            for (PartitionWindows windows : partitions.values()) {
+                groups += windows.open.size();
+            }
+            return groups;
+        }
+
+        void add(KafkaEventWrapper wrapper, long eventTime, long now, TopicPartition partition) {
+            PartitionWindows windows = partitions.computeIfAbsent(partition, p -> new PartitionWindows());
+            windows.maxEventTime.accumulateAndGet(eventTime, Math::max);
+            windows.lastInputAt = now;
+            // A restored partition may have had later windows flushed by its previous owner
+            long closedUntil = Math.max(watermark(windows, now), windows.flushedUntil);
+
+            Object[] groupValues = new Object[groupPaths.length];
+            for (int i = 0; i < groupPaths.length; i++) {
+                groupValues[i] = groupValue(readField(wrapper, groupPaths[i]));
+            }
+            List<Object> group = Arrays.asList(groupValues);
+
+            // NaN marks a missing or non-numeric input, which that aggregate skips
+            double[] inputs = new double[functions.length];
+            for (int i = 0; i < functions.length; i++) {
+                inputs[i] = fieldPaths[i] == null ? Double.NaN : numeric(readField(wrapper, fieldPaths[i]));
+            }
+
+            boolean late = false;
+            long lastStart = eventTime - Math.floorMod(eventTime, slideMillis);
+            for (long start = lastStart; start > eventTime - sizeMillis; start -= slideMillis) {
+                if (start + sizeMillis <= closedUntil) {
+                    late = true;
+                    continue;
+                }
+                WindowKey key = new WindowKey(start, group);
+                if (!windows.open.containsKey(key) && windows.open.size() >= properties.getMaxOpenGroups()) {
+                    droppedGroups.increment();
+                    continue;
+                }
+                windows.open.compute(key, (k, accumulator) -> {
+                    Accumulator target = accumulator == null ? new Accumulator(functions) : accumulator;
+                    target.add(inputs);
+                    return target;
+                });
+            }
+            if (late) {
+                lateEvents.increment();
+            }
+        }
+
+        void toResults(WindowKey key, Accumulator accumulator, String sourcePartition, List<AggregationResult> results) {
+            Map<String, Object> groupKey = new LinkedHashMap<>();
+            for (int i = 0; i < groupPaths.length; i++) {
+                groupKey.put(definition.getGroupBy().get(i), key.group.get(i));
+            }
+            String groupJson;
+            try {
+                groupJson = objectMapper.writeValueAsString(groupKey);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Group key is not serializable", e);
+            }
+
+            LocalDateTime windowStart = LocalDateTime.ofInstant(Instant.ofEpochMilli(key.start), ZoneOffset.UTC);
+            LocalDateTime windowEnd = LocalDateTime.ofInstant(Instant.ofEpochMilli(key.start + sizeMillis), ZoneOffset.UTC);
+            for (int i = 0; i < functions.length; i++) {
+                if (functions[i] != AggregateFunction.COUNT && !accumulator.seen[i]) {
+                    continue;
+                }
+                results.add(AggregationResult.builder()
+                        .aggregationName(definition.getName())
+                        .windowStart(windowStart)
+                        .windowEnd(windowEnd)
+                        .groupKey(groupJson)
+                        .aggregate(labels[i])
+                        .function(functions[i].name().toLowerCase())
+                        .value(functions[i] == AggregateFunction.COUNT ? accumulator.count : accumulator.values[i])
+                        .sourcePartition(sourcePartition)
+                        .build());
+            }
+        }
+
+        private Object groupValue(Object value) {
+            if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+                return value;
+            }
+            return value.toString();
+        }
+
+        private double numeric(Object value) {
+            return value instanceof Number number ? number.doubleValue() : Double.NaN;
+        }
+    }
+
+    /**
+     * Open windows of one aggregation for one source partition.
+     */
+    private final class PartitionWindows {
+        final AtomicLong maxEventTime = new AtomicLong(Long.MIN_VALUE);
+        // Wall-clock time of the last event; a restored partition starts out as active
+        volatile long lastInputAt = System.currentTimeMillis();
+        // Windows ending at or before this were flushed, here or by a previous owner
+        volatile long flushedUntil = Long.MIN_VALUE;
+        final Map<WindowKey, Accumulator> open = new ConcurrentHashMap<>();
+
+        synchronized JsonNode snapshot() {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("max_event_time", maxEventTime.get());
+            ArrayNode array = node.putArray("windows");
+            open.forEach((key, accumulator) -> {
+                ObjectNode window = array.addObject();
+                window.put("start", key.start);
+                window.set("group", objectMapper.valueToTree(key.group));
+                window.put("count", accumulator.count);
+                window.set("values", objectMapper.valueToTree(accumulator.values));
+                window.set("seen", objectMapper.valueToTree(accumulator.seen));
+            });
+            return node;
+        }
+
+        void restore(JsonNode node, RunningAggregation aggregation) {
+            maxEventTime.set(node.path("max_event_time").asLong(Long.MIN_VALUE));
+            int restored = 0;
+            for (JsonNode window : node.path("windows")) {
+                long start = window.path("start").asLong();
+                // Skip windows already flushed and snapshots taken under a different definition
+                if (start + aggregation.sizeMillis <= flushedUntil
+                        || window.path("values").size() != aggregation.functions.length) {
+                    continue;
+                }
+                Accumulator accumulator = new Accumulator(aggregation.functions);
+                accumulator.count = window.path("count").asLong();
+                for (int i = 0; i < aggregation.functions.length; i++) {
+                    accumulator.values[i] = window.path("values").get(i).asDouble();
+                    accumulator.seen[i] = window.path("seen").get(i).asBoolean();
+                }
+                List<Object> group = Arrays.asList(objectMapper.convertValue(window.path("group"), Object[].class));
+                open.put(new WindowKey(start, group), accumulator);
+                restored++;
+            }
+            log.debug("Restored {} open window group(s) of aggregation {}", restored, aggregation.definition.getName());
+        }
+    }
+
+    private record WindowKey(long start, List<Object> group) {
+    }
+
+    /**
+     * Running count/sum/min/max of one window and group. Only touched inside
+     * ConcurrentHashMap.compute/merge or after removal from the map, so it needs no locking.
+     */
+    private static final class Accumulator {
+        final AggregateFunction[] functions;
+        long count;
+        final double[] values;
+        final boolean[] seen;
+
+        Accumulator(AggregateFunction[] functions) {
+            this.functions = functions;
+            this.values = new double[functions.length];
+            this.seen = new boolean[functions.length];
+        }
+
+        void add(double[] inputs) {
+            count++;
+            for (int i = 0; i < functions.length; i++) {
+                if (functions[i] != AggregateFunction.COUNT && !Double.isNaN(inputs[i])) {
+                    combine(i, inputs[i], functions[i]);
+                }
+            }
+        }
+
+        Accumulator merge(Accumulator other) {
+            count += other.count;
+            for (int i = 0; i < functions.length; i++) {
+                if (other.seen[i]) {
+                    combine(i, other.values[i], functions[i]);
+                }
+            }
+            return this;
+        }
+
+        private void combine(int i, double value, AggregateFunction function) {
+            if (!seen[i]) {
+                values[i] = value;
+                seen[i] = true;
+                return;
+            }
+            switch (function) {
+                case SUM -> values[i] += value;
+                case MIN -> values[i] = Math.min(values[i], value);
+                case MAX -> values[i] = Math.max(values[i], value);
+                default -> {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.anishk05.processor.service;
+
+public class DecodingException extends Exception {
+    public DecodingException(String message) {
+        super(message);
+    }
+
+    public DecodingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -23,6 +23,10 @@ public class DlqMessage {
     
     @JsonProperty("tenant_id")
     private String tenantId;
+    
+    // Set for binary envelopes, whose original is Base64-encoded
+    @JsonProperty("content_type")
+    private String contentType;
 }
 
 
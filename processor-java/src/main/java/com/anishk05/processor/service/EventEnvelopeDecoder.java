@@ -0,0 +1,192 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Decodes events.raw records into KafkaEventWrapper.
+ * Binary (Avro) records carry content-type, event_type and schema_version headers so
+ * the payload schema can be looked up without parsing the body; everything else is JSON.
+ */
+@Service
+public class EventEnvelopeDecoder {
+
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    public static final String EVENT_TYPE_HEADER = "event_type";
+    public static final String SCHEMA_VERSION_HEADER = "schema_version";
+    public static final String TENANT_HEADER = "tenant_id";
+
+    private final ObjectMapper objectMapper;
+    private final LocalSchemaRegistry schemaRegistry;
+    private final ThreadLocal<BinaryDecoder> decoders = new ThreadLocal<>();
+
+    public EventEnvelopeDecoder(ObjectMapper objectMapper, LocalSchemaRegistry schemaRegistry) {
+        this.objectMapper = objectMapper;
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    public KafkaEventWrapper decode(byte[] value, Headers headers) throws DecodingException {
+        WireFormat format = formatOf(headers);
+        try {
+            if (format == WireFormat.AVRO) {
+                return decodeAvro(value, headers);
+            }
+            return objectMapper.readValue(value, KafkaEventWrapper.class);
+        } catch (IOException | RuntimeException e) {
+            throw new DecodingException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renders a record for the DLQ: JSON is kept as text, binary envelopes are Base64-encoded.
+     */
+    public String describe(byte[] value, Headers headers) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (formatOf(headers) == WireFormat.JSON) {
+                return new String(value, StandardCharsets.UTF_8);
+            }
+        } catch (DecodingException e) {
+            // Unknown content type, fall through to Base64
+        }
+        return Base64.getEncoder().encodeToString(value);
+    }
+
+    public WireFormat formatOf(Headers headers) throws DecodingException {
+        return WireFormat.fromContentType(header(headers, CONTENT_TYPE_HEADER));
+    }
+
+    @SuppressWarnings("unchecked")
+    private KafkaEventWrapper decodeAvro(byte[] value, Headers headers) throws DecodingException, IOException {
+        String eventType = header(headers, EVENT_TYPE_HEADER);
+        String schemaVersion = header(headers, SCHEMA_VERSION_HEADER);
+        if (eventType == null || schemaVersion == null) {
+            throw new DecodingException("Avro records require event_type and schema_version headers");
+        }
+
+        int version;
+        try {
+            version = Integer.parseInt(schemaVersion.trim());
+        } catch (NumberFormatException e) {
+            throw new DecodingException("Invalid schema_version header: " + schemaVersion);
+        }
+
+        Schema schema = schemaRegistry.envelopeFor(eventType, version)
+                .orElseThrow(() -> new DecodingException("No schema registered for " + eventType + " v" + version));
+
+        // Reuse the per-thread decoder buffer instead of allocating one per record
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(value, decoders.get());
+        decoders.set(decoder);
+        Map<String, Object> envelope = readRecord(schema, decoder);
+        Map<String, Object> event = (Map<String, Object>) envelope.get("event");
+
+        return KafkaEventWrapper.builder()
+                .tenantId((String) envelope.get("tenant_id"))
+                .receivedAt((String) envelope.get("received_at"))
+                .requestId((String) envelope.get("request_id"))
+                .idempotencyKey((String) envelope.get("idempotency_key"))
+                .event(IngestEvent.builder()
+                        .eventId((String) event.get("event_id"))
+                        .eventType((String) event.get("event_type"))
+                        .schemaVersion((Integer) event.get("schema_version"))
+                        .occurredAt((String) event.get("occurred_at"))
+                        .payload((Map<String, Object>) event.get("payload"))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Reads Avro binary straight into the plain map/list/scalar structure that the JSON path
+     * produces. The writer schema is the one named by the record headers, so no schema
+     * resolution (and no GenericRecord/Utf8 intermediates) is needed.
+     */
+    private static Map<String, Object> readRecord(Schema schema, BinaryDecoder in) throws IOException {
+        List<Schema.Field> fields = schema.getFields();
+        Map<String, Object> record = new LinkedHashMap<>(fields.size() * 2);
+        for (Schema.Field field : fields) {
+            record.put(field.name(), read(field.schema(), in));
+        }
+        return record;
+    }
+
+    private static Object read(Schema schema, BinaryDecoder in) throws IOException {
+        switch (schema.getType()) {
+            case RECORD:
+                return readRecord(schema, in);
+            case STRING:
+                return in.readString();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case NULL:
+                in.readNull();
+                return null;
+            case ENUM:
+                return schema.getEnumSymbols().get(in.readEnum());
+            case BYTES:
+                ByteBuffer buffer = in.readBytes(null);
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return Base64.getEncoder().encodeToString(bytes);
+            case FIXED:
+                byte[] fixed = new byte[schema.getFixedSize()];
+                in.readFixed(fixed);
+                return Base64.getEncoder().encodeToString(fixed);
+            case UNION:
+                return read(schema.getTypes().get(in.readIndex()), in);
+            case ARRAY:
+                List<Object> list = new ArrayList<>();
+                for (long n = in.readArrayStart(); n > 0; n = in.arrayNext()) {
+                    for (long i = 0; i < n; i++) {
+                        list.add(read(schema.getElementType(), in));
+                    }
+                }
+                return list;
+            case MAP:
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (long n = in.readMapStart(); n > 0; n = in.mapNext()) {
+                    for (long i = 0; i < n; i++) {
+                        map.put(in.readString(), read(schema.getValueType(), in));
+                    }
+                }
+                return map;
+            default:
+                throw new IOException("Unsupported Avro type: " + schema.getType());
+        }
+    }
+
+    /**
+     * Reads tenant_id from an Avro envelope without looking up its schema: it is the first
+     * envelope field, so the record starts with it as a length-prefixed string.
+     */
+    public static String avroTenantId(byte[] value) throws IOException {
+        return DecoderFactory.get().binaryDecoder(value, null).readString();
+    }
+
+    public static String header(Headers headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        Header header = headers.lastHeader(name);
+        return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,251 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.ExportProperties;
+import com.anishk05.processor.db.EventExportRepository;
+import com.anishk05.processor.db.PayloadStoragePolicy;
+import com.anishk05.processor.db.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a tenant's events to an output stream row by row, so memory use is bounded
+ * by the JDBC fetch size rather than the size of the export.
+ */
+@Service
+@Slf4j
+public class EventExportService {
+
+    private static final String[] CSV_HEADER = {
+            "id", "tenant_id", "event_id", "idempotency_key", "event_type", "schema_version",
+            "occurred_at", "received_at", "processed_at", "payload", "status"
+    };
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final EventExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+    private final PayloadStoragePolicy payloadStoragePolicy;
+    private final ExportProperties properties;
+    private final ShardRouter shardRouter;
+    private final Semaphore slots;
+
+    public EventExportService(EventExportRepository exportRepository, ObjectMapper objectMapper,
+                              PayloadStoragePolicy payloadStoragePolicy, ExportProperties properties,
+                              ShardRouter shardRouter) {
+        this.exportRepository = exportRepository;
+        this.objectMapper = objectMapper;
+        this.payloadStoragePolicy = payloadStoragePolicy;
+        this.properties = properties;
+        this.shardRouter = shardRouter;
+        this.slots = new Semaphore(Math.max(1, properties.getMaxConcurrent()));
+    }
+
+    /**
+     * Whether an export could start now. Does not reserve anything; the slot is only taken
+     * by {@link #exportInSlot} while the export is actually streaming.
+     */
+    public boolean hasFreeSlot() {
+        return slots.availablePermits() > 0;
+    }
+
+    /**
+     * Runs {@link #export} in a slot held only for the duration of the call, so a response
+     * body that never runs or a client that goes away cannot keep it.
+     *
+     * @throws IOException if every slot was taken in the meantime
+     */
+    public long exportInSlot(String tenantId, LocalDateTime from, LocalDateTime to, ExportFormat format,
+                             boolean gzip, OutputStream target) throws IOException {
+        if (!slots.tryAcquire()) {
+            throw new IOException("Too many concurrent exports");
+        }
+        try {
+            return export(tenantId, from, to, format, gzip, target);
+        } finally {
+            slots.release();
+        }
+    }
+
+    public long export(String tenantId, LocalDateTime from, LocalDateTime to, ExportFormat format,
+                       boolean gzip, OutputStream target) throws IOException {
+        OutputStream out = gzip ? new GZIPOutputStream(target, BUFFER_SIZE) : new BufferedOutputStream(target, BUFFER_SIZE);
+        RowWriter writer = format == ExportFormat.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out);
+        Throttle throttle = new Throttle(properties.getMaxRowsPerSecond());
+        long[] rows = {0};
+
+        // The tenant's current shard; exports are refused while a tenant is being moved
+        int shard = shardRouter.readShardsFor(tenantId).get(0);
+        shardRouter.onShard(shard, () -> {
+            exportRepository.streamEvents(tenantId, from, to, rs -> {
+                try {
+                    writer.write(rs);
+                } catch (IOException e) {
+                    // Client went away; abort the cursor instead of reading the rest
+                    throw new UncheckedIOException(e);
+                }
+                throttle.onRow(++rows[0]);
+            });
+            return null;
+        });
+
+        writer.finish();
+        if (out instanceof GZIPOutputStream gzipOut) {
+            gzipOut.finish();
+        }
+        out.flush();
+
+        log.info("Exported {} events for tenant {} ({} to {})", rows[0], tenantId, from, to);
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    private class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeStringField("id", rs.getString("id"));
+            generator.writeStringField("tenant_id", rs.getString("tenant_id"));
+            generator.writeStringField("event_id", rs.getString("event_id"));
+            generator.writeStringField("idempotency_key", rs.getString("idempotency_key"));
+            generator.writeStringField("event_type", rs.getString("event_type"));
+            generator.writeNumberField("schema_version", rs.getInt("schema_version"));
+            generator.writeStringField("occurred_at", timestamp(rs, "occurred_at"));
+            generator.writeStringField("received_at", timestamp(rs, "received_at"));
+            generator.writeStringField("processed_at", timestamp(rs, "processed_at"));
+            // Payload is already JSON text from the database, pass it through untouched
+            generator.writeFieldName("payload");
+            generator.writeRawValue(payload(rs));
+            generator.writeStringField("status", rs.getString("status"));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writeLine(CSV_HEADER);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writeLine(new String[]{
+                    rs.getString("id"),
+                    rs.getString("tenant_id"),
+                    rs.getString("event_id"),
+                    rs.getString("idempotency_key"),
+                    rs.getString("event_type"),
+                    String.valueOf(rs.getInt("schema_version")),
+                    timestamp(rs, "occurred_at"),
+                    timestamp(rs, "received_at"),
+                    timestamp(rs, "processed_at"),
+                    payload(rs),
+                    rs.getString("status")
+            });
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeLine(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values[i]));
+            }
+            writer.write('\n');
+        }
+
+        private String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    /**
+     * Inline JSONB text, or the inflated blob for offloaded payloads.
+     */
+    private String payload(ResultSet rs) throws SQLException {
+        String codec = rs.getString("payload_codec");
+        byte[] blob = codec == null ? null : rs.getBytes("payload_blob");
+        if (blob == null) {
+            return rs.getString("payload");
+        }
+        byte[] raw = payloadStoragePolicy.inflateRaw(codec, blob, rs.getInt("payload_original_size"));
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static String timestamp(ResultSet rs, String column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value == null ? null : value.toLocalDateTime().toString();
+    }
+
+    /**
+     * Paces a single export to a maximum row rate so long-running dumps
+     * cannot monopolise database I/O.
+     */
+    private static class Throttle {
+        private static final int CHECK_EVERY = 100;
+
+        private final int maxRowsPerSecond;
+        private final long startNanos = System.nanoTime();
+
+        Throttle(int maxRowsPerSecond) {
+            this.maxRowsPerSecond = maxRowsPerSecond;
+        }
+
+        void onRow(long rows) {
+            if (maxRowsPerSecond <= 0 || rows % CHECK_EVERY != 0) {
+                return;
+            }
+            long expectedMs = rows * 1000 / maxRowsPerSecond;
+            long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+            if (expectedMs > elapsedMs) {
+                try {
+                    Thread.sleep(expectedMs - elapsedMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Export interrupted", e);
+                }
+            }
+        }
+    }
+}
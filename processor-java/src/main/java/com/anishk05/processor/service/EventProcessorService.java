@@ -1,17 +1,26 @@
 package com.anishk05.processor.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.anishk05.processor.db.EventEntity;
-import com.anishk05.processor.db.EventRepository;
-import com.anishk05.processor.kafka.DlqProducer;
+import com.anishk05.processor.db.EventStore;
+import com.anishk05.processor.db.SpillDrainer;
+import com.anishk05.processor.db.SpillJournal;
+import com.anishk05.processor.kafka.AdaptiveFlowController;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.CannotCreateTransactionException;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -21,18 +30,31 @@ public class EventProcessorService {
 
     private final ValidationService validationService;
     private final EnrichmentService enrichmentService;
-    private final EventRepository eventRepository;
-    private final DlqProducer dlqProducer;
-    private final ObjectMapper objectMapper;
+    private final EventStore eventStore;
+    private final AdaptiveFlowController flowController;
+    private final SpillJournal spillJournal;
+    private final EventEnvelopeDecoder eventDecoder;
+    private final ContinuousAggregationService aggregationService;
+    private final EventSketchService sketchService;
 
-    @Transactional
-    public void processEvent(String rawMessage) {
+    // Not @Transactional: the save runs in its own transaction so that a failure to
+    // even open one (database down) reaches persist() and can be spilled locally.
+    // Failures are returned rather than sent so the caller can publish them on the
+    // listener thread, inside the batch's Kafka transaction when one is active.
+    public Optional<DlqMessage> processEvent(ConsumerRecord<String, byte[]> record, boolean replay) {
+        if (replay) {
+            replayIntoState(record);
+            return Optional.empty();
+        }
+
+        byte[] value = record.value();
+        Headers headers = record.headers();
         KafkaEventWrapper wrapper = null;
         String tenantId = null;
         
         try {
             // 1. Deserialize
-            wrapper = objectMapper.readValue(rawMessage, KafkaEventWrapper.class);
+            wrapper = eventDecoder.decode(value, headers);
             tenantId = wrapper.getTenantId();
             
             // 2. Validate
@@ -43,20 +65,104 @@ public class EventProcessorService {
             
             // 4. Save to database
             EventEntity entity = buildEventEntity(wrapper);
-            eventRepository.save(entity);
+            boolean firstDelivery = persist(entity, record);
+
+            // 5. Continuous aggregations and sketches, skipped for redelivered events already counted
+            // and for spilled events, which are counted once the drainer has stored them
+            if (firstDelivery) {
+                aggregationService.accept(wrapper, entity.getOccurredAt(), partitionOf(record));
+                sketchService.accept(wrapper, entity.getOccurredAt());
+            }
             
             log.info("Successfully processed event {} for tenant {}", 
                     wrapper.getEvent().getEventId(), tenantId);
+            return Optional.empty();
             
-        } catch (JsonProcessingException e) {
+        } catch (DecodingException e) {
             log.error("Failed to deserialize message: {}", e.getMessage());
-            dlqProducer.sendToDlq(rawMessage, "DESERIALIZATION_FAILED: " + e.getMessage(), tenantId);
+            return Optional.of(toDlqMessage(value, headers, "DESERIALIZATION_FAILED: " + e.getMessage(), tenantId));
         } catch (ValidationException e) {
             log.error("Validation failed: {}", e.getMessage());
-            dlqProducer.sendToDlq(rawMessage, "VALIDATION_FAILED: " + e.getMessage(), tenantId);
+            return Optional.of(toDlqMessage(value, headers, "VALIDATION_FAILED: " + e.getMessage(), tenantId));
         } catch (Exception e) {
             log.error("Unexpected error processing event: {}", e.getMessage(), e);
-            dlqProducer.sendToDlq(rawMessage, "PROCESSING_ERROR: " + e.getMessage(), tenantId);
+            flowController.recordFailure();
+            return Optional.of(toDlqMessage(value, headers, "PROCESSING_ERROR: " + e.getMessage(), tenantId));
+        }
+    }
+
+    // Re-read after restoring an older partition checkpoint: the record was stored (or
+    // dead-lettered) when first processed, so it only feeds partition state
+    private void replayIntoState(ConsumerRecord<String, byte[]> record) {
+        try {
+            KafkaEventWrapper wrapper = eventDecoder.decode(record.value(), record.headers());
+            validationService.validate(wrapper);
+            enrichmentService.enrich(wrapper);
+            aggregationService.accept(wrapper, parseTimestamp(wrapper.getEvent().getOccurredAt()), partitionOf(record));
+        } catch (Exception e) {
+            log.debug("Skipping replayed record at offset {}: {}", record.offset(), e.getMessage());
+        }
+    }
+
+    private DlqMessage toDlqMessage(byte[] value, Headers headers, String reason, String tenantId) {
+        return DlqMessage.builder()
+                .failedAt(LocalDateTime.now().toString())
+                .reason(reason)
+                .original(eventDecoder.describe(value, headers))
+                .tenantId(tenantId)
+                .contentType(EventEnvelopeDecoder.header(headers, EventEnvelopeDecoder.CONTENT_TYPE_HEADER))
+                .build();
+    }
+
+    /**
+     * @return true if the row was inserted now; false if it already existed or was spilled
+     */
+    private boolean persist(EventEntity entity, ConsumerRecord<?, ?> record) throws IOException {
+        if (!spillJournal.isEnabled()) {
+            return eventStore.save(entity);
+        }
+
+        // While spilling, keep journaling until the drainer hands writes back
+        SpillJournal.SpilledEvent spilled = new SpillJournal.SpilledEvent(entity, record.topic(), record.partition());
+        if (spillJournal.isSpilling() && spillJournal.appendIfSpilling(spilled)) {
+            return false;
+        }
+
+        try {
+            return eventStore.save(entity);
+        } catch (CannotCreateTransactionException | DataAccessResourceFailureException
+                 | TransientDataAccessResourceException e) {
+            log.warn("Database unavailable, spilling event {}: {}", entity.getEventId(), e.getMessage());
+            spillJournal.append(spilled);
+            return false;
+        }
+    }
+
+    /**
+     * Counts spilled events the drainer has just inserted, as processEvent does for direct
+     * writes. The wrapper is rebuilt from the stored row, which carries every field the
+     * aggregations and sketches read.
+     */
+    @EventListener
+    public void onSpilledEventsStored(SpillDrainer.SpilledEventsStored stored) {
+        for (SpillJournal.SpilledEvent spilled : stored.getEvents()) {
+            EventEntity entity = spilled.getEvent();
+            KafkaEventWrapper wrapper = KafkaEventWrapper.builder()
+                    .tenantId(entity.getTenantId())
+                    .idempotencyKey(entity.getIdempotencyKey())
+                    .receivedAt(entity.getReceivedAt().toString())
+                    .processedAt(entity.getProcessedAt().toString())
+                    .event(IngestEvent.builder()
+                            .eventId(entity.getEventId())
+                            .eventType(entity.getEventType())
+                            .schemaVersion(entity.getSchemaVersion())
+                            .occurredAt(entity.getOccurredAt().toString())
+                            .payload(entity.getPayload())
+                            .build())
+                    .build();
+            aggregationService.accept(wrapper, entity.getOccurredAt(),
+                    new TopicPartition(spilled.getTopic(), spilled.getPartition()));
+            sketchService.accept(wrapper, entity.getOccurredAt());
         }
     }
 
@@ -64,7 +170,7 @@ public class EventProcessorService {
         IngestEvent event = wrapper.getEvent();
         
         return EventEntity.builder()
-                .id(UUID.randomUUID())
+                .id(eventUuid(wrapper.getTenantId(), wrapper.getIdempotencyKey()))
                 .tenantId(wrapper.getTenantId())
                 .eventId(event.getEventId())
                 .idempotencyKey(wrapper.getIdempotencyKey())
@@ -78,6 +184,18 @@ public class EventProcessorService {
                 .build();
     }
 
+    /**
+     * Stable row id for a tenant's idempotency key, so a redelivered record maps onto
+     * the row it already produced and EventStore's insert becomes a no-op.
+     */
+    static UUID eventUuid(String tenantId, String idempotencyKey) {
+        return UUID.nameUUIDFromBytes((tenantId + "\u0000" + idempotencyKey).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static TopicPartition partitionOf(ConsumerRecord<?, ?> record) {
+        return new TopicPartition(record.topic(), record.partition());
+    }
+
     private LocalDateTime parseTimestamp(String timestamp) {
         try {
             return LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME);
@@ -0,0 +1,291 @@
+package com.anishk05.processor.service;
+
+import com.anishk05.processor.config.SketchProperties;
+import com.anishk05.processor.db.EventSketch;
+import com.anishk05.processor.db.EventSketchStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Maintains per-minute distinct-count and heavy-hitter sketches on configured payload
+ * fields, keyed by tenant, event type, field and event-time minute. The top-level payload
+ * key names themselves get a heavy-hitter sketch too, under the field {@link #PAYLOAD_KEYS}.
+ *
+ * Only what arrived since the last flush is kept in memory; a flush merges it into the
+ * stored minute sketch. Queries merge the stored minutes of a window one row at a time,
+ * so memory stays constant however long the window is. Events count once they are
+ * flushed, at most flush-interval-ms after they were stored.
+ */
+@Service
+@Slf4j
+public class EventSketchService {
+
+    static final String DISTINCT = "hll";
+    static final String HEAVY_HITTERS = "topk";
+
+    // Field under which payload key names are sketched, '$' keeps it apart from real fields
+    public static final String PAYLOAD_KEYS = "$keys";
+
+    private final SketchProperties properties;
+    private final EventSketchStore store;
+    private final Counter dropped;
+    private final Set<String> distinctFields;
+    private final Set<String> heavyHitterFields;
+    private final Set<String> fields;
+    private final Map<SketchKey, MinuteSketches> open = new ConcurrentHashMap<>();
+
+    public EventSketchService(SketchProperties properties, EventSketchStore store, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.store = store;
+        this.dropped = Counter.builder("processor.sketch.dropped").register(meterRegistry);
+        this.distinctFields = Set.copyOf(properties.getDistinctFields());
+        this.heavyHitterFields = Set.copyOf(properties.getHeavyHitterFields());
+        Set<String> all = new LinkedHashSet<>(distinctFields);
+        all.addAll(heavyHitterFields);
+        this.fields = all;
+    }
+
+    /**
+     * Adds the event's configured payload fields to the sketches of its minute.
+     */
+    public void accept(KafkaEventWrapper wrapper, LocalDateTime occurredAt) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Map<String, Object> payload = wrapper.getEvent().getPayload();
+        if (payload == null || payload.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime minute = occurredAt.truncatedTo(ChronoUnit.MINUTES);
+        if (properties.isPayloadKeys()) {
+            SketchKey keys = new SketchKey(wrapper.getTenantId(), wrapper.getEvent().getEventType(),
+                    PAYLOAD_KEYS, minute);
+            update(keys, sketches -> {
+                for (String name : payload.keySet()) {
+                    sketches.heavyHitters().add(truncate(name));
+                }
+            });
+        }
+        for (String field : fields) {
+            String value = scalar(payload.get(field));
+            if (value == null) {
+                continue;
+            }
+            SketchKey key = new SketchKey(wrapper.getTenantId(), wrapper.getEvent().getEventType(), field, minute);
+            boolean distinct = distinctFields.contains(field);
+            boolean heavyHitters = heavyHitterFields.contains(field);
+            update(key, sketches -> {
+                if (distinct) {
+                    sketches.distinct().add(HyperLogLog.hash(value));
+                }
+                if (heavyHitters) {
+                    sketches.heavyHitters().add(value);
+                }
+            });
+        }
+    }
+
+    /**
+     * Estimated number of distinct values of a field in [from, to); eventType null covers all types.
+     */
+    public long distinctCount(String tenantId, String field, String eventType, LocalDateTime from, LocalDateTime to) {
+        if (!distinctFields.contains(field)) {
+            throw new IllegalArgumentException("No distinct-count sketch for field " + field);
+        }
+        HyperLogLog[] merged = {null};
+        store.forEach(DISTINCT, tenantId, field, eventType, from, to, data -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(data);
+            merged[0] = merged[0] == null ? sketch : HyperLogLog.union(merged[0], sketch);
+        });
+        return merged[0] == null ? 0 : merged[0].estimate();
+    }
+
+    /**
+     * The k most frequent values of a field in [from, to); eventType null covers all types.
+     * Field {@link #PAYLOAD_KEYS} returns the most frequent top-level payload keys.
+     */
+    public List<SpaceSavingSketch.Counter> heavyHitters(String tenantId, String field, String eventType,
+                                                        LocalDateTime from, LocalDateTime to, int k) {
+        boolean payloadKeys = PAYLOAD_KEYS.equals(field) && properties.isPayloadKeys();
+        if (!payloadKeys && !heavyHitterFields.contains(field)) {
+            throw new IllegalArgumentException("No heavy-hitter sketch for field " + field);
+        }
+        if (k < 1 || k > properties.getHeavyHitterCapacity()) {
+            throw new IllegalArgumentException("k must be between 1 and " + properties.getHeavyHitterCapacity());
+        }
+        SpaceSavingSketch merged = new SpaceSavingSketch(properties.getHeavyHitterCapacity());
+        store.forEach(HEAVY_HITTERS, tenantId, field, eventType, from, to,
+                data -> merged.merge(SpaceSavingSketch.fromBytes(data)));
+        return merged.top(k);
+    }
+
+    @Scheduled(fixedDelayString = "${processor.sketch.flush-interval-ms:5000}")
+    public void flush() {
+        if (properties.isEnabled()) {
+            flushOpen();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushOpen();
+    }
+
+    private synchronized void flushOpen() {
+        Map<SketchKey, MinuteSketches> taken = new HashMap<>();
+        List<EventSketch> rows = new ArrayList<>();
+        for (SketchKey key : open.keySet()) {
+            MinuteSketches sketches = open.remove(key);
+            if (sketches == null) {
+                continue;
+            }
+            // Waits for an update in progress; later updates go to a fresh entry
+            synchronized (sketches) {
+                sketches.retired = true;
+            }
+            taken.put(key, sketches);
+            if (sketches.distinct != null) {
+                rows.add(toRow(DISTINCT, key, sketches.distinct.toBytes()));
+            }
+            if (sketches.heavyHitters != null) {
+                rows.add(toRow(HEAVY_HITTERS, key, sketches.heavyHitters.toBytes()));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            store.mergeAll(rows, this::merge);
+        } catch (Exception e) {
+            // Sketches merge, so the unflushed ones simply rejoin whatever arrived meanwhile
+            log.warn("Failed to flush {} sketches, retrying on the next flush: {}", rows.size(), e.getMessage());
+            taken.forEach((key, sketches) -> update(key, current -> current.merge(sketches)));
+        }
+    }
+
+    private byte[] merge(String sketchType, byte[] stored, byte[] added) {
+        if (DISTINCT.equals(sketchType)) {
+            return HyperLogLog.union(HyperLogLog.fromBytes(stored), HyperLogLog.fromBytes(added)).toBytes();
+        }
+        SpaceSavingSketch merged = SpaceSavingSketch.fromBytes(stored);
+        merged.merge(SpaceSavingSketch.fromBytes(added));
+        return merged.toBytes();
+    }
+
+    private void update(SketchKey key, Consumer<MinuteSketches> action) {
+        while (true) {
+            MinuteSketches sketches = open.get(key);
+            if (sketches == null) {
+                if (open.size() >= properties.getMaxOpenSketches()) {
+                    dropped.increment();
+                    return;
+                }
+                sketches = open.computeIfAbsent(key, k -> new MinuteSketches());
+            }
+            synchronized (sketches) {
+                // Taken by a concurrent flush, go again with a fresh entry
+                if (!sketches.retired) {
+                    action.accept(sketches);
+                    return;
+                }
+            }
+        }
+    }
+
+    private String scalar(Object value) {
+        if (value == null || value instanceof Map || value instanceof Collection) {
+            return null;
+        }
+        return truncate(value.toString());
+    }
+
+    private String truncate(String text) {
+        return text.length() > properties.getMaxValueLength()
+                ? text.substring(0, properties.getMaxValueLength())
+                : text;
+    }
+
+    private EventSketch toRow(String sketchType, SketchKey key, byte[] data) {
+        return EventSketch.builder()
+                .sketchType(sketchType)
+                .tenantId(key.tenantId)
+                .eventType(key.eventType)
+                .field(key.field)
+                .minute(key.minute)
+                .data(data)
+                .build();
+    }
+
+    private static final class SketchKey {
+        final String tenantId;
+        final String eventType;
+        final String field;
+        final LocalDateTime minute;
+
+        SketchKey(String tenantId, String eventType, String field, LocalDateTime minute) {
+            this.tenantId = tenantId;
+            this.eventType = eventType;
+            this.field = field;
+            this.minute = minute;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SketchKey other)) {
+                return false;
+            }
+            return tenantId.equals(other.tenantId) && eventType.equals(other.eventType)
+                    && field.equals(other.field) && minute.equals(other.minute);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tenantId, eventType, field, minute);
+        }
+    }
+
+    // Guarded by its own monitor
+    private final class MinuteSketches {
+        HyperLogLog distinct;
+        SpaceSavingSketch heavyHitters;
+        boolean retired;
+
+        HyperLogLog distinct() {
+            if (distinct == null) {
+                distinct = new HyperLogLog(properties.getHllPrecision());
+            }
+            return distinct;
+        }
+
+        SpaceSavingSketch heavyHitters() {
+            if (heavyHitters == null) {
+                heavyHitters = new SpaceSavingSketch(properties.getHeavyHitterCapacity());
+            }
+            return heavyHitters;
+        }
+
+        void merge(MinuteSketches other) {
+            if (other.distinct != null) {
+                distinct = distinct == null ? other.distinct : HyperLogLog.union(distinct, other.distinct);
+            }
+            if (other.heavyHitters != null) {
+                heavyHitters().merge(other.heavyHitters);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.anishk05.processor.service;
+
+/**
+ * Dense HyperLogLog over 64-bit hashes. Two sketches merge by taking the register-wise
+ * maximum, so per-minute sketches can be combined into any longer window; a sketch can
+ * also be folded down to a lower precision to merge with one built at that precision.
+ */
+public class HyperLogLog {
+
+    private static final byte VERSION = 1;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Guard bit bounds the rank when the remaining bits are all zero
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Merges another sketch of the same or a higher precision into this one.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision < precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        HyperLogLog source = other.precision == precision ? other : other.withPrecision(precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (source.registers[i] > registers[i]) {
+                registers[i] = source.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Merges two sketches into the one with the lower precision (a when equal) and returns it,
+     * so sketches written before a precision change still combine.
+     */
+    public static HyperLogLog union(HyperLogLog a, HyperLogLog b) {
+        if (b.precision < a.precision) {
+            b.merge(a);
+            return b;
+        }
+        a.merge(b);
+        return a;
+    }
+
+    /**
+     * Returns this sketch folded down to a lower precision, as if built at that precision.
+     */
+    public HyperLogLog withPrecision(int target) {
+        if (target > precision) {
+            throw new IllegalArgumentException("Cannot raise precision from " + precision + " to " + target);
+        }
+        HyperLogLog folded = new HyperLogLog(target);
+        int shift = precision - target;
+        int lowMask = (1 << shift) - 1;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == 0) {
+                continue;
+            }
+            // Index bits dropped by the fold become the leading bits of the rank
+            int dropped = i & lowMask;
+            int rank = dropped != 0
+                    ? Integer.numberOfLeadingZeros(dropped) - (32 - shift) + 1
+                    : registers[i] + shift;
+            int index = i >>> shift;
+            if (rank > folded.registers[index]) {
+                folded.registers[index] = (byte) rank;
+            }
+        }
+        return folded;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Linear counting is more accurate while many registers are still empty
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 2];
+        bytes[0] = VERSION;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 2, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length < 2 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog encoding");
+        }
+        HyperLogLog sketch = new HyperLogLog(bytes[1]);
+        if (bytes.length != sketch.registers.length + 2) {
+            throw new IllegalArgumentException("Truncated HyperLogLog encoding");
+        }
+        System.arraycopy(bytes, 2, sketch.registers, 0, sketch.registers.length);
+        return sketch;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer so
+     * that the high bits used for the register index are well distributed.
+     */
+    public static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,85 @@
+package com.anishk05.processor.service;
+
+import com.anishk05.processor.config.SchemaRegistryProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * File-based schema registry. Each {event_type}.v{schema_version}.avsc file holds the
+ * payload schema for that event type; the envelope fields around it are the same for
+ * every type and mirror KafkaEventWrapper / IngestEvent.
+ */
+@Service
+@Slf4j
+public class LocalSchemaRegistry {
+
+    private static final Pattern SCHEMA_FILE = Pattern.compile("(.+)\\.v(\\d+)\\.avsc");
+    private static final String NAMESPACE = "com.anishk05.pulse.envelope";
+
+    private final SchemaRegistryProperties properties;
+    private final Map<String, Schema> envelopes = new ConcurrentHashMap<>();
+
+    public LocalSchemaRegistry(SchemaRegistryProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        String location = properties.getLocation().endsWith("/") ? properties.getLocation() : properties.getLocation() + "/";
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(location + "*.avsc");
+        for (Resource resource : resources) {
+            Matcher matcher = SCHEMA_FILE.matcher(resource.getFilename() == null ? "" : resource.getFilename());
+            if (!matcher.matches()) {
+                log.warn("Ignoring schema file with unexpected name: {}", resource.getFilename());
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                register(matcher.group(1), Integer.parseInt(matcher.group(2)), new Schema.Parser().parse(in));
+            }
+        }
+        log.info("Loaded {} payload schema(s) from {}", envelopes.size(), location);
+    }
+
+    public void register(String eventType, int schemaVersion, Schema payloadSchema) {
+        envelopes.put(key(eventType, schemaVersion), envelopeSchema(payloadSchema));
+    }
+
+    public Optional<Schema> envelopeFor(String eventType, int schemaVersion) {
+        return Optional.ofNullable(envelopes.get(key(eventType, schemaVersion)));
+    }
+
+    static String key(String eventType, int schemaVersion) {
+        return eventType + "/v" + schemaVersion;
+    }
+
+    private static Schema envelopeSchema(Schema payloadSchema) {
+        Schema event = SchemaBuilder.record("IngestEvent").namespace(NAMESPACE).fields()
+                .requiredString("event_id")
+                .requiredString("event_type")
+                .requiredInt("schema_version")
+                .requiredString("occurred_at")
+                .name("payload").type(payloadSchema).noDefault()
+                .endRecord();
+
+        return SchemaBuilder.record("KafkaEventWrapper").namespace(NAMESPACE).fields()
+                .requiredString("tenant_id")
+                .requiredString("received_at")
+                .optionalString("request_id")
+                .requiredString("idempotency_key")
+                .name("event").type(event).noDefault()
+                .endRecord();
+    }
+}
@@ -0,0 +1,51 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A persisted event as published to events.processed, keyed by tenant.
+ * The id is stable across redeliveries, so consumers can deduplicate on it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedEventMessage {
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("tenant_id")
+    private String tenantId;
+
+    @JsonProperty("event_id")
+    private String eventId;
+
+    @JsonProperty("idempotency_key")
+    private String idempotencyKey;
+
+    @JsonProperty("event_type")
+    private String eventType;
+
+    @JsonProperty("schema_version")
+    private Integer schemaVersion;
+
+    @JsonProperty("occurred_at")
+    private String occurredAt;
+
+    @JsonProperty("received_at")
+    private String receivedAt;
+
+    @JsonProperty("processed_at")
+    private String processedAt;
+
+    // Full payload JSON, inflated when it was offloaded
+    @JsonProperty("payload")
+    @JsonRawValue
+    private String payload;
+}
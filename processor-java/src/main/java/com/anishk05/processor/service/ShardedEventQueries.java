@@ -0,0 +1,152 @@
+package com.anishk05.processor.service;
+
+import com.anishk05.processor.db.EventEntity;
+import com.anishk05.processor.db.EventPayloadBlobRepository;
+import com.anishk05.processor.db.EventRepository;
+import com.anishk05.processor.db.PayloadStoragePolicy;
+import com.anishk05.processor.db.ShardRouter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Admin reads over tenant-sharded storage. Lookups for one tenant go to its shard, and to
+ * the shard it is being moved from while a move is running; dashboard aggregates are
+ * scattered to every shard and merged. Results keep the shapes of the EventRepository
+ * queries they replace.
+ * While a tenant is moving, rows already copied to its new shard are still on the old one
+ * until the mover deletes them; counts subtract those so each event is counted once.
+ */
+@Service
+@RequiredArgsConstructor
+public class ShardedEventQueries {
+
+    // Ids per IN list when looking for copied rows on a moving tenant's new shard
+    private static final int ID_CHUNK = 1000;
+
+    private final ShardRouter shardRouter;
+    private final EventRepository eventRepository;
+    private final EventPayloadBlobRepository payloadBlobRepository;
+    private final PayloadStoragePolicy payloadStoragePolicy;
+
+    public long countEventsSince(LocalDateTime since) {
+        long total = shardRouter.scatter(() -> eventRepository.countEventsSince(since)).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+        return total - countCopiedSince(since).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return [event type, count] rows, largest count first
+     */
+    public List<Object[]> countEventTypesSince(LocalDateTime since) {
+        Map<String, Long> counts = new HashMap<>();
+        for (List<Object[]> rows : shardRouter.scatter(() -> eventRepository.countEventTypesSince(since))) {
+            for (Object[] row : rows) {
+                counts.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+            }
+        }
+        countCopiedSince(since).forEach((type, copied) -> counts.computeIfPresent(type, (k, count) -> count - copied));
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+                .toList();
+    }
+
+    /**
+     * Most recently received events across all shards, with their full payloads.
+     */
+    public List<ResolvedEvent> findRecentEvents(int limit) {
+        List<List<ResolvedEvent>> perShard = shardRouter.scatter(() -> {
+            // Offloaded payloads live on the same shard as their events
+            List<EventEntity> entities = eventRepository.findRecentEventsByReceivedAt(PageRequest.of(0, limit));
+            Map<UUID, Map<String, Object>> payloads = payloadStoragePolicy.resolvePayloads(entities);
+            return entities.stream()
+                    .map(entity -> new ResolvedEvent(entity, payloads.get(entity.getId())))
+                    .toList();
+        });
+        return perShard.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing((ResolvedEvent event) -> event.getEntity().getReceivedAt()).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public Optional<ResolvedEvent> findByTenantIdAndEventId(String tenantId, String eventId) {
+        return findOnTenantShards(tenantId, () -> eventRepository.findByTenantIdAndEventId(tenantId, eventId));
+    }
+
+    public Optional<ResolvedEvent> findByTenantIdAndIdempotencyKey(String tenantId, String idempotencyKey) {
+        return findOnTenantShards(tenantId,
+                () -> eventRepository.findByTenantIdAndIdempotencyKey(tenantId, idempotencyKey));
+    }
+
+    /**
+     * @return [tenant, offloaded events, original bytes, stored bytes] rows, largest saving first
+     */
+    public List<Object[]> summarizeBlobsByTenant() {
+        Map<String, long[]> totals = new HashMap<>();
+        for (List<Object[]> rows : shardRouter.scatter(payloadBlobRepository::summarizeByTenant)) {
+            for (Object[] row : rows) {
+                long[] total = totals.computeIfAbsent((String) row[0], k -> new long[3]);
+                total[0] += ((Number) row[1]).longValue();
+                total[1] += ((Number) row[2]).longValue();
+                total[2] += ((Number) row[3]).longValue();
+            }
+        }
+        return totals.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> entry) ->
+                        entry.getValue()[1] - entry.getValue()[2]).reversed())
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()[0], entry.getValue()[1], entry.getValue()[2]})
+                .toList();
+    }
+
+    /**
+     * Events of moving tenants present on both their old and new shard, by event type.
+     */
+    private Map<String, Long> countCopiedSince(LocalDateTime since) {
+        Map<String, Long> copied = new HashMap<>();
+        shardRouter.placements().forEach((tenantId, placement) -> {
+            if (placement.getPreviousShard() == null) {
+                return;
+            }
+            Map<UUID, String> types = new HashMap<>();
+            for (Object[] row : shardRouter.onShard(placement.getPreviousShard(),
+                    () -> eventRepository.findIdsAndTypesSince(tenantId, since))) {
+                types.put((UUID) row[0], (String) row[1]);
+            }
+            List<UUID> ids = new ArrayList<>(types.keySet());
+            for (int from = 0; from < ids.size(); from += ID_CHUNK) {
+                List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + ID_CHUNK));
+                for (UUID id : shardRouter.onShard(placement.getShard(), () -> eventRepository.findExistingIds(chunk))) {
+                    copied.merge(types.get(id), 1L, Long::sum);
+                }
+            }
+        });
+        return copied;
+    }
+
+    private Optional<ResolvedEvent> findOnTenantShards(String tenantId, Supplier<Optional<EventEntity>> query) {
+        for (int shard : shardRouter.readShardsFor(tenantId)) {
+            Optional<ResolvedEvent> found = shardRouter.onShard(shard, () -> query.get().map(entity ->
+                    new ResolvedEvent(entity, payloadStoragePolicy.resolvePayloads(List.of(entity)).get(entity.getId()))));
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class ResolvedEvent {
+        private EventEntity entity;
+        private Map<String, Object> payload;
+    }
+}
@@ -0,0 +1,264 @@
+package com.anishk05.processor.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Space-Saving heavy-hitter sketch with a fixed number of counters. When the counters are
+ * full, a new item takes over the smallest one and inherits its count as error, so every
+ * reported count overestimates the true count by at most its error. Merging follows
+ * Agarwal et al., "Mergeable Summaries": an item missing from one side is credited with
+ * that side's minimum count, then the largest counters are kept.
+ * Counters are kept in a stream-summary (Metwally et al.), so adding an item, including
+ * an eviction, takes constant time.
+ */
+public class SpaceSavingSketch {
+
+    private static final byte VERSION = 1;
+
+    private final int capacity;
+    private final Map<String, Node> nodes;
+    // Stream-summary: buckets of equal count in ascending order, so the smallest counter is
+    // always at hand and an increment moves its node at most one bucket along
+    private Bucket smallest;
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Space-Saving capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.nodes = new HashMap<>(capacity * 2);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Number of items offered, including ones no longer tracked
+    public long getTotal() {
+        return total;
+    }
+
+    public void add(String item) {
+        total++;
+        Node node = nodes.get(item);
+        if (node != null) {
+            increment(node);
+            return;
+        }
+        if (nodes.size() < capacity) {
+            node = new Node(item, 0);
+            nodes.put(item, node);
+            if (smallest == null || smallest.count != 1) {
+                Bucket first = new Bucket(1);
+                first.next = smallest;
+                if (smallest != null) {
+                    smallest.prev = first;
+                }
+                smallest = first;
+            }
+            smallest.attach(node);
+            return;
+        }
+        // Take over the smallest counter in place
+        node = smallest.head;
+        nodes.remove(node.item);
+        node.item = item;
+        node.error = smallest.count;
+        nodes.put(item, node);
+        increment(node);
+    }
+
+    public void merge(SpaceSavingSketch other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+
+        List<Counter> merged = new ArrayList<>(nodes.size() + other.nodes.size());
+        for (Node node : nodes.values()) {
+            Node theirs = other.nodes.get(node.item);
+            merged.add(theirs != null
+                    ? new Counter(node.item, node.count() + theirs.count(), node.error + theirs.error)
+                    : new Counter(node.item, node.count() + otherMin, node.error + otherMin));
+        }
+        for (Node theirs : other.nodes.values()) {
+            if (!nodes.containsKey(theirs.item)) {
+                merged.add(new Counter(theirs.item, theirs.count() + thisMin, theirs.error + thisMin));
+            }
+        }
+
+        merged.sort(Comparator.comparingLong(Counter::getCount).reversed());
+        rebuild(merged.subList(0, Math.min(capacity, merged.size())));
+        total += other.total;
+    }
+
+    /**
+     * Returns up to k counters, largest first.
+     */
+    public List<Counter> top(int k) {
+        return nodes.values().stream()
+                .map(node -> new Counter(node.item, node.count(), node.error))
+                .sorted(Comparator.comparingLong(Counter::getCount).reversed()
+                        .thenComparing(Counter::getItem))
+                .limit(k)
+                .toList();
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + nodes.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(capacity);
+            out.writeLong(total);
+            out.writeInt(nodes.size());
+            for (Node node : nodes.values()) {
+                out.writeUTF(node.item);
+                out.writeLong(node.count());
+                out.writeLong(node.error);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static SpaceSavingSketch fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported Space-Saving encoding");
+            }
+            SpaceSavingSketch sketch = new SpaceSavingSketch(in.readInt());
+            sketch.total = in.readLong();
+            int size = in.readInt();
+            List<Counter> counters = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                counters.add(new Counter(in.readUTF(), in.readLong(), in.readLong()));
+            }
+            sketch.rebuild(counters);
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Truncated Space-Saving encoding", e);
+        }
+    }
+
+    // Zero while there is a free counter: an untracked item cannot have been seen yet
+    private long minCount() {
+        return nodes.size() < capacity ? 0 : smallest.count;
+    }
+
+    private void increment(Node node) {
+        Bucket from = node.bucket;
+        Bucket to = from.next;
+        if (to == null || to.count != from.count + 1) {
+            to = new Bucket(from.count + 1);
+            to.prev = from;
+            to.next = from.next;
+            if (from.next != null) {
+                from.next.prev = to;
+            }
+            from.next = to;
+        }
+        from.detach(node);
+        to.attach(node);
+        if (from.head == null) {
+            unlink(from);
+        }
+    }
+
+    private void unlink(Bucket bucket) {
+        if (bucket.prev != null) {
+            bucket.prev.next = bucket.next;
+        } else {
+            smallest = bucket.next;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket.prev;
+        }
+    }
+
+    private void rebuild(List<Counter> counters) {
+        nodes.clear();
+        smallest = null;
+        Bucket largest = null;
+        List<Counter> ascending = new ArrayList<>(counters);
+        ascending.sort(Comparator.comparingLong(Counter::getCount));
+        for (Counter counter : ascending) {
+            if (largest == null || largest.count != counter.getCount()) {
+                Bucket bucket = new Bucket(counter.getCount());
+                bucket.prev = largest;
+                if (largest != null) {
+                    largest.next = bucket;
+                } else {
+                    smallest = bucket;
+                }
+                largest = bucket;
+            }
+            Node node = new Node(counter.getItem(), counter.getError());
+            largest.attach(node);
+            nodes.put(node.item, node);
+        }
+    }
+
+    private static final class Bucket {
+        final long count;
+        Bucket prev;
+        Bucket next;
+        Node head;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+
+        void attach(Node node) {
+            node.bucket = this;
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+        }
+
+        void detach(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private static final class Node {
+        String item;
+        long error;
+        Bucket bucket;
+        Node prev;
+        Node next;
+
+        Node(String item, long error) {
+            this.item = item;
+            this.error = error;
+        }
+
+        long count() {
+            return bucket.count;
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Counter {
+        private String item;
+        private long count;
+        // Upper bound on how much count overestimates the item's true count
+        private long error;
+    }
+}
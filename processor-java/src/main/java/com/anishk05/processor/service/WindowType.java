@@ -0,0 +1,13 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public enum WindowType {
+    // Fixed, non-overlapping windows of size_seconds
+    @JsonProperty("tumbling")
+    TUMBLING,
+
+    // Windows of size_seconds starting every slide_seconds, so each event falls into several
+    @JsonProperty("sliding")
+    SLIDING
+}
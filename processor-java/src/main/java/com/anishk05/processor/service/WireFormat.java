@@ -0,0 +1,32 @@
+package com.anishk05.processor.service;
+
+/**
+ * Encodings accepted on events.raw, selected by the content-type record header.
+ * Records without the header are JSON, which is what the Go ingest service produces.
+ */
+public enum WireFormat {
+    JSON("application/json"),
+    AVRO("application/avro");
+
+    private final String contentType;
+
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static WireFormat fromContentType(String contentType) throws DecodingException {
+        if (contentType == null || contentType.isBlank()) {
+            return JSON;
+        }
+        for (WireFormat format : values()) {
+            if (format.contentType.equalsIgnoreCase(contentType.trim())) {
+                return format;
+            }
+        }
+        throw new DecodingException("Unsupported content-type: " + contentType);
+    }
+}
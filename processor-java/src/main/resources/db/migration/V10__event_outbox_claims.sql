@@ -0,0 +1,3 @@
+-- The relay claims outbox rows in a short transaction and publishes them after it has
+-- committed; claimed_until is the lease, after which unpublished rows are claimed again.
+ALTER TABLE event_outbox ADD COLUMN IF NOT EXISTS claimed_until TIMESTAMP;
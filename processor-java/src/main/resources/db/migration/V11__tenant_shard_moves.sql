@@ -0,0 +1,13 @@
+-- Progress of tenant moves, kept next to the directory on shard 0 so every processor
+-- reports the same moves. updated_at is the running processor's heartbeat.
+CREATE TABLE IF NOT EXISTS tenant_shard_moves (
+    tenant_id VARCHAR(255) PRIMARY KEY,
+    from_shard INTEGER NOT NULL,
+    to_shard INTEGER NOT NULL,
+    phase VARCHAR(32) NOT NULL,
+    copied BIGINT NOT NULL DEFAULT 0,
+    deleted BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    error TEXT
+);
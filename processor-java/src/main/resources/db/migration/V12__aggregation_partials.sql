@@ -0,0 +1,18 @@
+-- Each source partition's contribution to a window, as an absolute value that later flushes
+-- of the same window replace. aggregation_results holds these combined over partitions.
+CREATE TABLE IF NOT EXISTS aggregation_partials (
+    aggregation_name VARCHAR(255) NOT NULL,
+    window_start TIMESTAMP NOT NULL,
+    group_key TEXT NOT NULL,
+    aggregate VARCHAR(255) NOT NULL,
+    source_partition VARCHAR(255) NOT NULL,
+    value DOUBLE PRECISION NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (aggregation_name, window_start, group_key, aggregate, source_partition)
+);
+
+-- Results written before per-partition tracking keep their value as one more contribution
+INSERT INTO aggregation_partials (aggregation_name, window_start, group_key, aggregate, source_partition, value, updated_at)
+SELECT aggregation_name, window_start, group_key, aggregate, '', value, updated_at
+FROM aggregation_results
+ON CONFLICT DO NOTHING;
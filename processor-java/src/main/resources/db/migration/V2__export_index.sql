@@ -0,0 +1,2 @@
+-- Supports tenant-scoped range scans used by /admin/export
+CREATE INDEX IF NOT EXISTS idx_tenant_occurred ON events(tenant_id, occurred_at);
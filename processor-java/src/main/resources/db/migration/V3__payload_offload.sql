@@ -0,0 +1,16 @@
+-- Large payloads are stored compressed outside the events row
+ALTER TABLE events ADD COLUMN IF NOT EXISTS payload_codec VARCHAR(16);
+
+CREATE TABLE IF NOT EXISTS event_payload_blobs (
+    event_id UUID PRIMARY KEY REFERENCES events(id) ON DELETE CASCADE,
+    tenant_id VARCHAR(255) NOT NULL,
+    codec VARCHAR(16) NOT NULL,
+    original_size INTEGER NOT NULL,
+    stored_size INTEGER NOT NULL,
+    data BYTEA NOT NULL
+);
+
+-- Data is already compressed, so skip pglz and go straight to out-of-line storage
+ALTER TABLE event_payload_blobs ALTER COLUMN data SET STORAGE EXTERNAL;
+
+CREATE INDEX IF NOT EXISTS idx_payload_blobs_tenant ON event_payload_blobs(tenant_id);
@@ -0,0 +1,15 @@
+-- Finalized windows of continuous aggregations, one row per window, group and aggregate.
+-- Partial results for the same key (several replicas, restarts) are merged on insert.
+CREATE TABLE IF NOT EXISTS aggregation_results (
+    aggregation_name VARCHAR(255) NOT NULL,
+    window_start TIMESTAMP NOT NULL,
+    window_end TIMESTAMP NOT NULL,
+    group_key TEXT NOT NULL,
+    aggregate VARCHAR(255) NOT NULL,
+    aggregate_function VARCHAR(16) NOT NULL,
+    value DOUBLE PRECISION NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (aggregation_name, window_start, group_key, aggregate)
+);
+
+CREATE INDEX IF NOT EXISTS idx_aggregation_results_end ON aggregation_results(aggregation_name, window_end);
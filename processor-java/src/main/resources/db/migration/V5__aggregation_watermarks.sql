@@ -0,0 +1,10 @@
+-- Per source partition, every window of an aggregation ending at or before flushed_until
+-- has been written to aggregation_results. A new partition owner drops restored or
+-- replayed contributions to those windows instead of counting them twice.
+CREATE TABLE IF NOT EXISTS aggregation_watermarks (
+    aggregation_name VARCHAR(255) NOT NULL,
+    source_partition VARCHAR(255) NOT NULL,
+    flushed_until TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (aggregation_name, source_partition)
+);
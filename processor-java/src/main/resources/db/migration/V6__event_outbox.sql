@@ -0,0 +1,11 @@
+-- Transactional outbox: one row per newly inserted event, written in the same
+-- transaction as the event itself and deleted once the relay has published it
+-- to events.processed. seq only orders the relay's reads; ids are not gap-free.
+CREATE TABLE IF NOT EXISTS event_outbox (
+    seq BIGSERIAL PRIMARY KEY,
+    event_id UUID NOT NULL REFERENCES events(id) ON DELETE CASCADE,
+    tenant_id VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_event_outbox_event ON event_outbox(event_id);
@@ -0,0 +1,14 @@
+-- Mergeable per-minute sketches per tenant, event type and payload field.
+-- sketch_type is 'hll' (distinct count) or 'topk' (heavy hitters); data is the
+-- processor's binary encoding and is merged in the processor, not in SQL.
+CREATE TABLE IF NOT EXISTS event_sketches (
+    sketch_type VARCHAR(16) NOT NULL,
+    tenant_id VARCHAR(255) NOT NULL,
+    field VARCHAR(255) NOT NULL,
+    minute TIMESTAMP NOT NULL,
+    event_type VARCHAR(255) NOT NULL,
+    data BYTEA NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    -- Key order serves window queries with and without an event type
+    PRIMARY KEY (sketch_type, tenant_id, field, minute, event_type)
+);
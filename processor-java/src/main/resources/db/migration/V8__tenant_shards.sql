@@ -0,0 +1,9 @@
+-- Tenant to shard directory. Only shard 0's copy is used; the migration runs on every
+-- shard so all of them keep the same schema history.
+CREATE TABLE IF NOT EXISTS tenant_shards (
+    tenant_id VARCHAR(255) PRIMARY KEY,
+    shard INTEGER NOT NULL,
+    -- Set while the tenant's events are being moved off this shard
+    previous_shard INTEGER,
+    updated_at TIMESTAMP NOT NULL
+);
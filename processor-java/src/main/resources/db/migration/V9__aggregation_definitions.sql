@@ -0,0 +1,7 @@
+-- Registered continuous aggregations. Every replica loads and refreshes its running set
+-- from here, so a definition survives restarts no matter which replica received the POST.
+CREATE TABLE IF NOT EXISTS aggregation_definitions (
+    name VARCHAR(255) PRIMARY KEY,
+    definition JSONB NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,159 @@
+package com.anishk05.processor.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.service.IngestEvent;
+import com.anishk05.processor.service.KafkaEventWrapper;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches the processor as a fresh process and measures the time until the context
+ * reports it has started and until the first record produced at launch is in PostgreSQL,
+ * which is what matters for a replica added by lag-based autoscaling.
+ *
+ * Needs Kafka and PostgreSQL from infra/docker-compose.yml, no other processor in the
+ * consumer group and no backlog on events.raw. Build first (mvn package, or -Pcds), then:
+ *   mvn -q test-compile exec:java -Dexec.mainClass=com.anishk05.processor.bench.StartupBenchmark \
+ *       -Dexec.classpathScope=test \
+ *       -Dexec.args="java -XX:SharedArchiveFile=target/cds/application.jsa -jar target/cds/event-processor-1.0.0-app.jar --spring.profiles.active=worker"
+ * Without arguments it launches target/event-processor-1.0.0.jar. -Dbench.runs sets the number of runs.
+ */
+public class StartupBenchmark {
+
+    private static final String TOPIC = "events.raw";
+    private static final String TENANT = "startup_bench";
+    private static final String STARTED_MARKER = "Started ProcessorApplication in";
+    private static final long TIMEOUT_MS = 120_000;
+    private static final long POLL_INTERVAL_MS = 10;
+
+    public static void main(String[] args) throws Exception {
+        List<String> command = args.length > 0
+                ? Arrays.asList(args)
+                : List.of("java", "-jar", "target/event-processor-1.0.0.jar");
+        int runs = Integer.getInteger("bench.runs", 3);
+        String bootstrapServers = System.getProperty("bench.bootstrap-servers", "localhost:9092");
+        String jdbcUrl = System.getProperty("bench.jdbc-url", "jdbc:postgresql://localhost:5432/event_platform");
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        System.out.println("command: " + String.join(" ", command));
+        System.out.printf("%-4s %16s %22s%n", "run", "context ready ms", "first record ms");
+
+        try (KafkaProducer<String, byte[]> producer = producer(bootstrapServers);
+             Connection connection = DriverManager.getConnection(jdbcUrl, "ep_user", "ep_pass")) {
+            for (int run = 1; run <= runs; run++) {
+                String idempotencyKey = "startup_" + UUID.randomUUID();
+                byte[] event = objectMapper.writeValueAsBytes(markerEvent(idempotencyKey));
+
+                long start = System.nanoTime();
+                Process process = new ProcessBuilder(command)
+                        .directory(new File("."))
+                        .redirectErrorStream(true)
+                        .start();
+                long[] readyAt = {-1};
+                Thread reader = watchOutput(process, start, readyAt);
+
+                try {
+                    // Produced at launch, like the backlog an autoscaled replica is started for
+                    producer.send(new ProducerRecord<>(TOPIC, TENANT, event)).get();
+                    long firstRecordMs = awaitRow(connection, idempotencyKey, start, process);
+                    System.out.printf("%-4d %16s %22d%n", run,
+                            readyAt[0] < 0 ? "n/a" : String.valueOf(readyAt[0]), firstRecordMs);
+                } finally {
+                    process.destroy();
+                    if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                        process.destroyForcibly();
+                    }
+                    reader.join(1_000);
+                }
+            }
+        }
+    }
+
+    private static long awaitRow(Connection connection, String idempotencyKey, long start, Process process)
+            throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM events WHERE tenant_id = ? AND idempotency_key = ?")) {
+            statement.setString(1, TENANT);
+            statement.setString(2, idempotencyKey);
+            while (true) {
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                }
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Processor exited with code " + process.exitValue());
+                }
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > TIMEOUT_MS) {
+                    throw new IllegalStateException("No record persisted within " + TIMEOUT_MS + " ms");
+                }
+                Thread.sleep(POLL_INTERVAL_MS);
+            }
+        }
+    }
+
+    // Drains the child's output (so it never blocks on a full pipe) and notes when the context is up
+    private static Thread watchOutput(Process process, long start, long[] readyAt) {
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (readyAt[0] < 0 && line.contains(STARTED_MARKER)) {
+                        readyAt[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                }
+            } catch (Exception e) {
+                // Process was destroyed
+            }
+        }, "startup-bench-output");
+        reader.setDaemon(true);
+        reader.start();
+        return reader;
+    }
+
+    private static KafkaProducer<String, byte[]> producer(String bootstrapServers) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        return new KafkaProducer<>(props);
+    }
+
+    private static KafkaEventWrapper markerEvent(String idempotencyKey) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("user_id", "user_startup");
+        payload.put("ip", "127.0.0.1");
+
+        String now = Instant.now().toString();
+        return KafkaEventWrapper.builder()
+                .tenantId(TENANT)
+                .receivedAt(now)
+                .requestId(UUID.randomUUID().toString())
+                .idempotencyKey(idempotencyKey)
+                .event(IngestEvent.builder()
+                        .eventId("evt_" + idempotencyKey)
+                        .eventType("user_login")
+                        .schemaVersion(1)
+                        .occurredAt(now)
+                        .payload(payload)
+                        .build())
+                .build();
+    }
+}
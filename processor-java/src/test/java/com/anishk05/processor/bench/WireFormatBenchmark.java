@@ -0,0 +1,174 @@
+package com.anishk05.processor.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.SchemaRegistryProperties;
+import com.anishk05.processor.service.EventEnvelopeDecoder;
+import com.anishk05.processor.service.IngestEvent;
+import com.anishk05.processor.service.KafkaEventWrapper;
+import com.anishk05.processor.service.LocalSchemaRegistry;
+import com.anishk05.processor.service.WireFormat;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Compares bytes per event and decode cost of the JSON and Avro envelopes on events.raw,
+ * using the loadgen event shape and the bundled user_login v1 schema. Decoding goes
+ * through EventEnvelopeDecoder, the same path RawEventConsumer uses.
+ *
+ * Run with:
+ *   mvn -q test-compile exec:java -Dexec.mainClass=com.anishk05.processor.bench.WireFormatBenchmark \
+ *       -Dexec.classpathScope=test
+ */
+public class WireFormatBenchmark {
+
+    private static final int EVENTS = 10_000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        LocalSchemaRegistry registry = new LocalSchemaRegistry(new SchemaRegistryProperties());
+        registry.load();
+        Schema schema = registry.envelopeFor("user_login", 1)
+                .orElseThrow(() -> new IllegalStateException("user_login v1 schema not found"));
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        EventEnvelopeDecoder decoder = new EventEnvelopeDecoder(objectMapper, registry);
+        GenericDatumWriter<GenericRecord> avroWriter = new GenericDatumWriter<>(schema);
+
+        Random random = new Random(42);
+        List<byte[]> json = new ArrayList<>(EVENTS);
+        List<byte[]> avro = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            KafkaEventWrapper wrapper = sampleEvent(random, i);
+            json.add(objectMapper.writeValueAsBytes(wrapper));
+            avro.add(encodeAvro(wrapper, schema, avroWriter));
+        }
+
+        Headers avroHeaders = new RecordHeaders();
+        avroHeaders.add(EventEnvelopeDecoder.CONTENT_TYPE_HEADER, bytes(WireFormat.AVRO.getContentType()));
+        avroHeaders.add(EventEnvelopeDecoder.EVENT_TYPE_HEADER, bytes("user_login"));
+        avroHeaders.add(EventEnvelopeDecoder.SCHEMA_VERSION_HEADER, bytes("1"));
+
+        System.out.printf("%-6s %14s %16s%n", "format", "bytes/event", "decode ns/event");
+        report("json", json, decoder, new RecordHeaders());
+        report("avro", avro, decoder, avroHeaders);
+    }
+
+    private static void report(String name, List<byte[]> encoded, EventEnvelopeDecoder decoder,
+                               Headers headers) throws Exception {
+        long totalBytes = 0;
+        for (byte[] bytes : encoded) {
+            totalBytes += bytes.length;
+        }
+
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += decodeAll(encoded, decoder, headers);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            sink += decodeAll(encoded, decoder, headers);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double nsPerEvent = elapsed / (double) (MEASURED_ROUNDS * encoded.size());
+        System.out.printf("%-6s %14.1f %16.0f%n", name, totalBytes / (double) encoded.size(), nsPerEvent);
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static long decodeAll(List<byte[]> encoded, EventEnvelopeDecoder decoder, Headers headers)
+            throws Exception {
+        long sink = 0;
+        for (byte[] bytes : encoded) {
+            sink += decoder.decode(bytes, headers).getEvent().getPayload().size();
+        }
+        return sink;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] encodeAvro(KafkaEventWrapper wrapper, Schema schema,
+                                     GenericDatumWriter<GenericRecord> writer) throws Exception {
+        Schema eventSchema = schema.getField("event").schema();
+        Schema payloadSchema = eventSchema.getField("payload").schema();
+        Schema dataSchema = payloadSchema.getField("data").schema();
+
+        Map<String, Object> payload = wrapper.getEvent().getPayload();
+        Map<String, Object> data = (Map<String, Object>) payload.get("data");
+
+        GenericRecord dataRecord = new GenericData.Record(dataSchema);
+        dataRecord.put("key", data.get("key"));
+        dataRecord.put("count", data.get("count"));
+
+        GenericRecord payloadRecord = new GenericData.Record(payloadSchema);
+        payloadRecord.put("user_id", payload.get("user_id"));
+        payloadRecord.put("ip", payload.get("ip"));
+        payloadRecord.put("session_id", payload.get("session_id"));
+        payloadRecord.put("data", dataRecord);
+
+        IngestEvent event = wrapper.getEvent();
+        GenericRecord eventRecord = new GenericData.Record(eventSchema);
+        eventRecord.put("event_id", event.getEventId());
+        eventRecord.put("event_type", event.getEventType());
+        eventRecord.put("schema_version", event.getSchemaVersion());
+        eventRecord.put("occurred_at", event.getOccurredAt());
+        eventRecord.put("payload", payloadRecord);
+
+        GenericRecord envelope = new GenericData.Record(schema);
+        envelope.put("tenant_id", wrapper.getTenantId());
+        envelope.put("received_at", wrapper.getReceivedAt());
+        envelope.put("request_id", wrapper.getRequestId());
+        envelope.put("idempotency_key", wrapper.getIdempotencyKey());
+        envelope.put("event", eventRecord);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        writer.write(envelope, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static KafkaEventWrapper sampleEvent(Random random, int i) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("key", "value");
+        data.put("count", random.nextInt(100) + 1);
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("user_id", "user_" + (1000 + random.nextInt(9000)));
+        payload.put("ip", (random.nextInt(255) + 1) + "." + (random.nextInt(255) + 1) + "."
+                + (random.nextInt(255) + 1) + "." + (random.nextInt(255) + 1));
+        payload.put("session_id", UUID.randomUUID().toString().replace("-", "").substring(0, 20));
+        payload.put("data", data);
+
+        String now = Instant.now().toString();
+        return KafkaEventWrapper.builder()
+                .tenantId(random.nextBoolean() ? "tenant_a" : "tenant_b")
+                .receivedAt(now)
+                .requestId(UUID.randomUUID().toString())
+                .idempotencyKey("idem_" + i)
+                .event(IngestEvent.builder()
+                        .eventId("evt_" + i)
+                        .eventType("user_login")
+                        .schemaVersion(1)
+                        .occurredAt(now)
+                        .payload(payload)
+                        .build())
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.anishk05.processor.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.PayloadStorageProperties;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PayloadStoragePolicyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void codecsRoundTrip() {
+        byte[] raw = "{\"items\":[1,2,3],\"note\":\"abcabcabcabcabcabcabcabc\"}".repeat(100)
+                .getBytes(StandardCharsets.UTF_8);
+        for (PayloadCodec codec : PayloadCodec.values()) {
+            byte[] compressed = codec.compress(raw, 3);
+            assertTrue(compressed.length < raw.length, codec + " did not compress");
+            assertArrayEquals(raw, codec.decompress(compressed, raw.length), codec + " round trip");
+            assertEquals(codec, PayloadCodec.fromId(codec.id()));
+        }
+        assertEquals(PayloadCodec.LZ4, PayloadCodec.fromId(" lz4 "));
+    }
+
+    @Test
+    void smallPayloadStaysInline() throws Exception {
+        PayloadStoragePolicy policy = policy("zstd", mock(EventPayloadBlobRepository.class));
+        EventEntity entity = event(Map.of("user_id", "u-1"));
+
+        PayloadStoragePolicy.StoredEvent stored = policy.prepare(entity);
+        assertSame(entity, stored.getRow());
+        assertNull(stored.getBlob());
+        assertEquals("{\"user_id\":\"u-1\"}", stored.getPayloadJson());
+    }
+
+    @Test
+    void largePayloadIsOffloadedBehindAStub() throws Exception {
+        for (String codec : List.of("zstd", "lz4")) {
+            EventPayloadBlobRepository blobs = mock(EventPayloadBlobRepository.class);
+            PayloadStoragePolicy policy = policy(codec, blobs);
+            Map<String, Object> payload = largePayload();
+            EventEntity entity = event(payload);
+            int originalSize = objectMapper.writeValueAsBytes(payload).length;
+
+            PayloadStoragePolicy.StoredEvent stored = policy.prepare(entity);
+
+            Map<String, Object> stub = new LinkedHashMap<>();
+            stub.put(PayloadStoragePolicy.OFFLOADED_MARKER, true);
+            stub.put("codec", codec);
+            stub.put("original_size", originalSize);
+            assertEquals(stub, stored.getRow().getPayload());
+            assertEquals(objectMapper.writeValueAsString(stub), stored.getPayloadJson());
+            assertEquals(codec, stored.getRow().getPayloadCodec());
+            // The original entity is left as it was, so it can still be spilled
+            assertEquals(payload, entity.getPayload());
+            assertNull(entity.getPayloadCodec());
+
+            EventPayloadBlobEntity blob = stored.getBlob();
+            assertEquals(entity.getId(), blob.getEventId());
+            assertEquals(codec, blob.getCodec());
+            assertEquals(originalSize, blob.getOriginalSize());
+            assertEquals(blob.getData().length, blob.getStoredSize());
+
+            when(blobs.findAllById(List.of(entity.getId()))).thenReturn(List.of(blob));
+            assertEquals(payload, policy.resolvePayloads(List.of(stored.getRow())).get(entity.getId()));
+        }
+    }
+
+    @Test
+    void missingBlobFallsBackToTheStub() throws Exception {
+        EventPayloadBlobRepository blobs = mock(EventPayloadBlobRepository.class);
+        PayloadStoragePolicy policy = policy("zstd", blobs);
+        EventEntity row = policy.prepare(event(largePayload())).getRow();
+        when(blobs.findAllById(List.of(row.getId()))).thenReturn(List.of());
+
+        assertEquals(row.getPayload(), policy.resolvePayloads(List.of(row)).get(row.getId()));
+    }
+
+    private PayloadStoragePolicy policy(String codec, EventPayloadBlobRepository blobs) {
+        PayloadStorageProperties properties = new PayloadStorageProperties();
+        properties.setCodec(codec);
+        properties.setOffloadThresholdBytes(256);
+        return new PayloadStoragePolicy(properties, objectMapper, blobs);
+    }
+
+    private static Map<String, Object> largePayload() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            payload.put("field_" + i, "value-" + i);
+        }
+        return payload;
+    }
+
+    private static EventEntity event(Map<String, Object> payload) {
+        return EventEntity.builder()
+                .id(UUID.randomUUID())
+                .tenantId("tenant-a")
+                .eventId("evt-1")
+                .eventType("page_view")
+                .payload(payload)
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package com.anishk05.processor.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.SpillProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private SpillJournal journal;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void sealedSegmentReadsBackInOrder() throws Exception {
+        journal = open();
+        for (int i = 0; i < 3; i++) {
+            journal.append(spilled("evt-" + i, i));
+        }
+        assertTrue(journal.isSpilling());
+        journal.sealActive();
+
+        List<SpillJournal.SpilledEvent> read = readAll(single(journal.sealedSegments()));
+        assertEquals(List.of("evt-0", "evt-1", "evt-2"), eventIds(read));
+        assertEquals(2, read.get(2).getPartition());
+        assertEquals("events.raw", read.get(2).getTopic());
+    }
+
+    @Test
+    void checksumMismatchStopsTheSegment() throws Exception {
+        journal = open();
+        for (int i = 0; i < 3; i++) {
+            journal.append(spilled("evt-" + i, i));
+        }
+        journal.sealActive();
+        Path segment = single(journal.sealedSegments());
+
+        // Flip one payload byte of the second record
+        long second = recordOffset(segment, 1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, second + 8 + 5);
+            one.put(0, (byte) (one.get(0) ^ 0x01)).rewind();
+            channel.write(one, second + 8 + 5);
+        }
+
+        assertEquals(List.of("evt-0"), eventIds(readAll(segment)));
+    }
+
+    @Test
+    void tornTailIsDroppedAfterACrash() throws Exception {
+        journal = open();
+        for (int i = 0; i < 3; i++) {
+            journal.append(spilled("evt-" + i, i));
+        }
+        journal.sync();
+        Path segment = single(directorySegments());
+
+        // The last record's header reached the file, its body did not
+        long last = recordOffset(segment, 2);
+        int length;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, last);
+            length = header.getInt(0);
+            channel.write(ByteBuffer.allocate(length), last + 8);
+        }
+        journal.close();
+        journal = null;
+
+        // A restart picks the segment up as sealed and stays in spill mode until it is drained
+        journal = open();
+        assertTrue(journal.isSpilling());
+        assertEquals(List.of(segment), journal.sealedSegments());
+        assertEquals(List.of("evt-0", "evt-1"), eventIds(readAll(segment)));
+    }
+
+    @Test
+    void handoffEndsSpillModeOnceEverythingIsDrained() throws Exception {
+        journal = open();
+        journal.append(spilled("evt-0", 0));
+        journal.sealActive();
+
+        journal.beginHandoff();
+        assertFalse(journal.endHandoff(true));
+        assertTrue(journal.isSpilling());
+
+        journal.deleteSegment(single(journal.sealedSegments()));
+        journal.beginHandoff();
+        assertTrue(journal.endHandoff(true));
+        assertFalse(journal.appendIfSpilling(spilled("evt-1", 0)));
+        assertTrue(directorySegments().isEmpty());
+    }
+
+    private SpillJournal open() throws Exception {
+        SpillProperties properties = new SpillProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentSizeMb(1);
+        SpillJournal opened = new SpillJournal(properties, objectMapper, new SimpleMeterRegistry());
+        opened.init();
+        return opened;
+    }
+
+    private List<SpillJournal.SpilledEvent> readAll(Path segment) throws Exception {
+        List<SpillJournal.SpilledEvent> read = new ArrayList<>();
+        long records = journal.readSegment(segment, read::add);
+        assertEquals(read.size(), records);
+        return read;
+    }
+
+    // Byte offset of the index-th record, following the length prefixes
+    private static long recordOffset(Path segment, int index) throws Exception {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long offset = 0;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            for (int i = 0; i < index; i++) {
+                length.clear();
+                channel.read(length, offset);
+                offset += 8 + length.getInt(0);
+            }
+            return offset;
+        }
+    }
+
+    private List<Path> directorySegments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static Path single(List<Path> segments) {
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private static List<String> eventIds(List<SpillJournal.SpilledEvent> events) {
+        return events.stream().map(spilled -> spilled.getEvent().getEventId()).toList();
+    }
+
+    private static SpillJournal.SpilledEvent spilled(String eventId, int partition) {
+        EventEntity event = EventEntity.builder()
+                .id(UUID.randomUUID())
+                .tenantId("tenant-a")
+                .eventId(eventId)
+                .idempotencyKey("key-" + eventId)
+                .eventType("page_view")
+                .schemaVersion(1)
+                .payload(Map.of("user_id", "u-1"))
+                .build();
+        return new SpillJournal.SpilledEvent(event, "events.raw", partition);
+    }
+}
@@ -0,0 +1,102 @@
+package com.anishk05.processor.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.FairnessProperties;
+import com.anishk05.processor.service.EventEnvelopeDecoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TenantFairSchedulerTest {
+
+    private TenantFairScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void weightTwoTenantGetsTwiceTheDispatches() {
+        FairnessProperties properties = new FairnessProperties();
+        properties.setWorkers(1);
+        properties.setQuantum(10);
+        properties.setWeights(Map.of("heavy", 2, "light", 1));
+        scheduler = new TenantFairScheduler(properties, new ObjectMapper(), new SimpleMeterRegistry());
+
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        records.addAll(recordsFor("light", 0, 60));
+        records.addAll(recordsFor("heavy", 60, 60));
+
+        // Both tenants stay backlogged for the first 90 dispatches
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<ConsumerRecord<String, byte[]>> undispatched =
+                scheduler.dispatch(records, records.size(), record -> order.add(tenantOf(record)));
+
+        List<String> backlogged = order.subList(0, 90);
+        assertEquals(60, Collections.frequency(backlogged, "heavy"));
+        assertEquals(30, Collections.frequency(backlogged, "light"));
+        assertEquals(120, order.size());
+        assertTrue(undispatched.isEmpty());
+    }
+
+    @Test
+    void budgetIsSharedByWeightInsteadOfBatchPosition() {
+        FairnessProperties properties = new FairnessProperties();
+        properties.setWorkers(1);
+        properties.setQuantum(10);
+        properties.setWeights(Map.of("heavy", 2, "light", 1));
+        scheduler = new TenantFairScheduler(properties, new ObjectMapper(), new SimpleMeterRegistry());
+
+        // The flooding tenant comes first in the batch, a positional cut would starve the other
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        records.addAll(recordsFor("heavy", 0, 100));
+        records.addAll(recordsFor("light", 100, 100));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<ConsumerRecord<String, byte[]>> undispatched =
+                scheduler.dispatch(records, 30, record -> order.add(tenantOf(record)));
+
+        assertEquals(20, Collections.frequency(order, "heavy"));
+        assertEquals(10, Collections.frequency(order, "light"));
+        assertEquals(170, undispatched.size());
+        // Each tenant's undispatched records are the tail of its queue, in batch order
+        assertEquals(20, undispatched.get(0).offset());
+        assertEquals(110, undispatched.get(80).offset());
+    }
+
+    @Test
+    void concurrencyCapScalesWithWeight() {
+        FairnessProperties properties = new FairnessProperties();
+        properties.setWeights(Map.of("heavy", 2));
+        properties.setMaxConcurrency(Map.of("pinned", 3));
+
+        assertEquals(2, properties.maxConcurrencyFor("heavy"));
+        assertEquals(1, properties.maxConcurrencyFor("other"));
+        assertEquals(3, properties.maxConcurrencyFor("pinned"));
+    }
+
+    private static List<ConsumerRecord<String, byte[]>> recordsFor(String tenantId, long firstOffset, int count) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("events.raw", 0, firstOffset + i,
+                    null, "{}".getBytes(StandardCharsets.UTF_8));
+            record.headers().add(EventEnvelopeDecoder.TENANT_HEADER, tenantId.getBytes(StandardCharsets.UTF_8));
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static String tenantOf(ConsumerRecord<String, byte[]> record) {
+        return EventEnvelopeDecoder.header(record.headers(), EventEnvelopeDecoder.TENANT_HEADER);
+    }
+}
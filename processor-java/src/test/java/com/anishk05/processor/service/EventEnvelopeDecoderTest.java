@@ -0,0 +1,135 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.SchemaRegistryProperties;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventEnvelopeDecoderTest {
+
+    private static final Schema PAYLOAD = SchemaBuilder.record("OrderPlaced").fields()
+            .requiredString("sku")
+            .requiredInt("quantity")
+            .name("tags").type().map().values().stringType().noDefault()
+            .endRecord();
+
+    private final LocalSchemaRegistry registry = new LocalSchemaRegistry(new SchemaRegistryProperties());
+    private final EventEnvelopeDecoder decoder = new EventEnvelopeDecoder(new ObjectMapper(), registry);
+
+    EventEnvelopeDecoderTest() {
+        registry.register("order_placed", 1, PAYLOAD);
+    }
+
+    @Test
+    void recordsWithoutContentTypeAreJson() throws Exception {
+        byte[] json = ("{\"tenant_id\":\"tenant-a\",\"received_at\":\"2024-01-01T00:00:00Z\","
+                + "\"idempotency_key\":\"key-1\",\"event\":{\"event_id\":\"evt-1\",\"event_type\":\"order_placed\","
+                + "\"schema_version\":1,\"occurred_at\":\"2024-01-01T00:00:00Z\",\"payload\":{\"sku\":\"A-1\"}}}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        KafkaEventWrapper wrapper = decoder.decode(json, new RecordHeaders());
+        assertEquals("tenant-a", wrapper.getTenantId());
+        assertEquals("evt-1", wrapper.getEvent().getEventId());
+        assertEquals(Map.of("sku", "A-1"), wrapper.getEvent().getPayload());
+        assertEquals(WireFormat.JSON, decoder.formatOf(headers(WireFormat.JSON.getContentType())));
+        assertEquals(new String(json, StandardCharsets.UTF_8), decoder.describe(json, new RecordHeaders()));
+    }
+
+    @Test
+    void avroContentTypeDecodesWithTheSchemaNamedByTheHeaders() throws Exception {
+        byte[] avro = encode();
+        Headers headers = avroHeaders("order_placed", "1");
+
+        KafkaEventWrapper wrapper = decoder.decode(avro, headers);
+        assertEquals("tenant-a", wrapper.getTenantId());
+        assertEquals("key-1", wrapper.getIdempotencyKey());
+        assertNull(wrapper.getRequestId());
+        assertEquals("order_placed", wrapper.getEvent().getEventType());
+        assertEquals(1, wrapper.getEvent().getSchemaVersion());
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("sku", "A-1");
+        payload.put("quantity", 3);
+        payload.put("tags", Map.of("channel", "web"));
+        assertEquals(payload, wrapper.getEvent().getPayload());
+
+        assertEquals("tenant-a", EventEnvelopeDecoder.avroTenantId(avro));
+        assertEquals(Base64.getEncoder().encodeToString(avro), decoder.describe(avro, headers));
+    }
+
+    @Test
+    void avroWithoutAUsableSchemaIsRejected() throws Exception {
+        byte[] avro = encode();
+        assertThrows(DecodingException.class, () -> decoder.decode(avro, avroHeaders("order_placed", "2")));
+        assertThrows(DecodingException.class, () -> decoder.decode(avro, avroHeaders("order_placed", "one")));
+        // No event_type or schema_version header
+        Headers bare = headers(WireFormat.AVRO.getContentType());
+        assertThrows(DecodingException.class, () -> decoder.decode(avro, bare));
+    }
+
+    @Test
+    void unknownContentTypeIsRejected() {
+        Headers headers = headers("application/x-protobuf");
+        assertThrows(DecodingException.class, () -> decoder.decode(new byte[]{1, 2}, headers));
+        assertEquals("AQI=", decoder.describe(new byte[]{1, 2}, headers));
+    }
+
+    private byte[] encode() throws IOException {
+        Schema envelope = registry.envelopeFor("order_placed", 1).orElseThrow();
+        Schema eventSchema = envelope.getField("event").schema();
+
+        GenericRecord payload = new GenericData.Record(PAYLOAD);
+        payload.put("sku", "A-1");
+        payload.put("quantity", 3);
+        payload.put("tags", Map.of("channel", "web"));
+
+        GenericRecord event = new GenericData.Record(eventSchema);
+        event.put("event_id", "evt-1");
+        event.put("event_type", "order_placed");
+        event.put("schema_version", 1);
+        event.put("occurred_at", "2024-01-01T00:00:00Z");
+        event.put("payload", payload);
+
+        GenericRecord wrapper = new GenericData.Record(envelope);
+        wrapper.put("tenant_id", "tenant-a");
+        wrapper.put("received_at", "2024-01-01T00:00:00Z");
+        wrapper.put("request_id", null);
+        wrapper.put("idempotency_key", "key-1");
+        wrapper.put("event", event);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(envelope).write(wrapper, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    private static Headers avroHeaders(String eventType, String schemaVersion) {
+        Headers headers = headers(WireFormat.AVRO.getContentType());
+        headers.add(EventEnvelopeDecoder.EVENT_TYPE_HEADER, eventType.getBytes(StandardCharsets.UTF_8));
+        headers.add(EventEnvelopeDecoder.SCHEMA_VERSION_HEADER, schemaVersion.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    private static Headers headers(String contentType) {
+        Headers headers = new RecordHeaders();
+        headers.add(EventEnvelopeDecoder.CONTENT_TYPE_HEADER, contentType.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
@@ -0,0 +1,100 @@
+package com.anishk05.processor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.anishk05.processor.config.ExportProperties;
+import com.anishk05.processor.db.EventExportRepository;
+import com.anishk05.processor.db.PayloadStoragePolicy;
+import com.anishk05.processor.db.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventExportServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 1, 2, 0, 0);
+
+    @Test
+    void csvQuotesOnlyFieldsThatNeedIt() throws Exception {
+        ResultSet row = row(Map.of(
+                "id", "00000000-0000-0000-0000-000000000001",
+                "tenant_id", "tenant-a",
+                "event_id", "evt,1",
+                "idempotency_key", "say \"hi\"",
+                "event_type", "line\nbreak",
+                "payload", "{\"a\":1,\"b\":\"x\"}",
+                "status", "processed"));
+
+        String csv = export(row);
+
+        String[] lines = csv.split("\n", 2);
+        assertEquals("id,tenant_id,event_id,idempotency_key,event_type,schema_version,"
+                + "occurred_at,received_at,processed_at,payload,status", lines[0]);
+        assertEquals("00000000-0000-0000-0000-000000000001,tenant-a,\"evt,1\",\"say \"\"hi\"\"\","
+                + "\"line\nbreak\",1,2024-01-01T10:00,2024-01-01T10:00,,"
+                + "\"{\"\"a\"\":1,\"\"b\"\":\"\"x\"\"}\",processed\n", lines[1]);
+    }
+
+    @Test
+    void carriageReturnsAreQuotedAndNullsAreEmpty() throws Exception {
+        ResultSet row = row(Map.of(
+                "id", "00000000-0000-0000-0000-000000000002",
+                "tenant_id", "tenant-a",
+                "event_id", "evt\r2",
+                "idempotency_key", "key-2",
+                "event_type", "plain",
+                "payload", "null",
+                "status", "processed"));
+        when(row.getString("status")).thenReturn(null);
+
+        String line = export(row).split("\n", 2)[1];
+        assertEquals("00000000-0000-0000-0000-000000000002,tenant-a,\"evt\r2\",key-2,plain,1,"
+                + "2024-01-01T10:00,2024-01-01T10:00,,null,\n", line);
+    }
+
+    private static String export(ResultSet row) throws Exception {
+        EventExportRepository repository = mock(EventExportRepository.class);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(3).processRow(row);
+            return null;
+        }).when(repository).streamEvents(eq("tenant-a"), eq(FROM), eq(TO), any());
+
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.readShardsFor("tenant-a")).thenReturn(List.of(0));
+        when(shardRouter.onShard(anyInt(), any()))
+                .thenAnswer(invocation -> invocation.<ShardRouter.ShardWork<?, ?>>getArgument(1).run());
+
+        EventExportService service = new EventExportService(repository, new ObjectMapper(),
+                mock(PayloadStoragePolicy.class), new ExportProperties(), shardRouter);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, service.export("tenant-a", FROM, TO, ExportFormat.CSV, false, out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ResultSet row(Map<String, String> columns) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            when(rs.getString(column.getKey())).thenReturn(column.getValue());
+        }
+        when(rs.getInt("schema_version")).thenReturn(1);
+        Timestamp at = Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 10, 0));
+        when(rs.getTimestamp("occurred_at")).thenReturn(at);
+        when(rs.getTimestamp("received_at")).thenReturn(at);
+        return rs;
+    }
+}
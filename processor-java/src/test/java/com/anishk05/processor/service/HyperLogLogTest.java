@@ -0,0 +1,92 @@
+package com.anishk05.processor.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateStaysWithinThreeStandardErrors() {
+        for (int precision : new int[]{10, 12, 14}) {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            int distinct = 200_000;
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(HyperLogLog.hash("user-" + i));
+            }
+            double standardError = 1.04 / Math.sqrt(1 << precision);
+            assertWithin(distinct, sketch.estimate(), 3 * standardError);
+        }
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 100; i++) {
+            sketch.add(HyperLogLog.hash("user-" + i));
+            // Repeats do not count
+            sketch.add(HyperLogLog.hash("user-" + i));
+        }
+        assertWithin(100, sketch.estimate(), 0.02);
+        assertEquals(0, new HyperLogLog(12).estimate());
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog a = new HyperLogLog(12);
+        HyperLogLog b = new HyperLogLog(12);
+        // 50k shared values, 50k on each side only
+        for (int i = 0; i < 100_000; i++) {
+            a.add(HyperLogLog.hash("user-" + i));
+            b.add(HyperLogLog.hash("user-" + (i + 50_000)));
+        }
+        a.merge(b);
+        assertWithin(150_000, a.estimate(), 0.05);
+    }
+
+    @Test
+    void unionFoldsToTheLowerPrecision() {
+        HyperLogLog coarse = new HyperLogLog(10);
+        HyperLogLog fine = new HyperLogLog(14);
+        for (int i = 0; i < 50_000; i++) {
+            coarse.add(HyperLogLog.hash("user-" + i));
+            fine.add(HyperLogLog.hash("user-" + (i + 25_000)));
+        }
+
+        HyperLogLog merged = HyperLogLog.union(fine, coarse);
+        assertEquals(10, merged.getPrecision());
+        assertWithin(75_000, merged.estimate(), 3 * 1.04 / Math.sqrt(1 << 10));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(14).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void foldedSketchMatchesOneBuiltAtThatPrecision() {
+        HyperLogLog fine = new HyperLogLog(14);
+        HyperLogLog coarse = new HyperLogLog(11);
+        for (int i = 0; i < 30_000; i++) {
+            long hash = HyperLogLog.hash("user-" + i);
+            fine.add(hash);
+            coarse.add(hash);
+        }
+        assertEquals(coarse.estimate(), fine.withPrecision(11).estimate());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(HyperLogLog.hash("user-" + i));
+        }
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+        assertEquals(12, restored.getPrecision());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue(error <= relativeError,
+                "estimate " + actual + " is off by " + error + " from " + expected + ", allowed " + relativeError);
+    }
+}
@@ -0,0 +1,128 @@
+package com.anishk05.processor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    void exactWhileItemsFitInTheCounters() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        for (int i = 0; i < 5; i++) {
+            for (int n = 0; n <= i; n++) {
+                sketch.add("item-" + i);
+            }
+        }
+
+        List<SpaceSavingSketch.Counter> top = sketch.top(3);
+        assertEquals(List.of("item-4", "item-3", "item-2"), items(top));
+        assertEquals(5, top.get(0).getCount());
+        assertTrue(top.stream().allMatch(counter -> counter.getError() == 0));
+        assertEquals(15, sketch.getTotal());
+    }
+
+    @Test
+    void evictedItemInheritsTheSmallestCountAsError() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(2);
+        sketch.add("a");
+        sketch.add("a");
+        sketch.add("b");
+        sketch.add("c");
+
+        Map<String, SpaceSavingSketch.Counter> counters = byItem(sketch.top(2));
+        assertEquals(Set.of("a", "c"), counters.keySet());
+        assertEquals(2, counters.get("c").getCount());
+        assertEquals(1, counters.get("c").getError());
+    }
+
+    @Test
+    void countsBoundTheTrueCountOnASkewedStream() {
+        int capacity = 50;
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        int events = 100_000;
+        for (int i = 0; i < events; i++) {
+            String item = "item-" + (int) (Math.pow(random.nextDouble(), 3) * 2000);
+            exact.merge(item, 1L, Long::sum);
+            sketch.add(item);
+        }
+
+        assertBounds(sketch.top(capacity), exact, events / capacity);
+        assertEquals(topItems(exact, 3), items(sketch.top(3)));
+    }
+
+    @Test
+    void mergedSketchKeepsTheBoundsOfBothStreams() {
+        int capacity = 50;
+        SpaceSavingSketch left = new SpaceSavingSketch(capacity);
+        SpaceSavingSketch right = new SpaceSavingSketch(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(11);
+        int events = 100_000;
+        for (int i = 0; i < events; i++) {
+            // The two halves are skewed towards different items
+            boolean onLeft = i % 2 == 0;
+            int rank = (int) (Math.pow(random.nextDouble(), 3) * 1000);
+            String item = "item-" + (onLeft ? rank : 1000 - rank);
+            exact.merge(item, 1L, Long::sum);
+            (onLeft ? left : right).add(item);
+        }
+
+        left.merge(SpaceSavingSketch.fromBytes(right.toBytes()));
+        assertEquals(events, left.getTotal());
+        assertEquals(capacity, left.top(capacity + 10).size());
+        assertBounds(left.top(capacity), exact, events / capacity);
+        assertEquals(new HashSet<>(topItems(exact, 2)),
+                new HashSet<>(items(left.top(2))));
+    }
+
+    @Test
+    void bytesRoundTripKeepsCountsAndErrors() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(3);
+        for (String item : List.of("a", "a", "a", "b", "b", "c", "d", "e", "a")) {
+            sketch.add(item);
+        }
+        SpaceSavingSketch restored = SpaceSavingSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.top(3), restored.top(3));
+        assertEquals(sketch.getTotal(), restored.getTotal());
+
+        // The restored sketch keeps evicting from its smallest counter
+        sketch.add("f");
+        restored.add("f");
+        assertEquals(sketch.top(3), restored.top(3));
+    }
+
+    private static void assertBounds(List<SpaceSavingSketch.Counter> counters, Map<String, Long> exact,
+                                     long maxError) {
+        for (SpaceSavingSketch.Counter counter : counters) {
+            long trueCount = exact.getOrDefault(counter.getItem(), 0L);
+            assertTrue(counter.getCount() >= trueCount, counter + " undercounts " + trueCount);
+            assertTrue(counter.getCount() - counter.getError() <= trueCount,
+                    counter + " error is too small for " + trueCount);
+            assertTrue(counter.getError() <= maxError, counter + " error exceeds " + maxError);
+        }
+    }
+
+    private static List<String> topItems(Map<String, Long> exact, int k) {
+        return exact.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static List<String> items(List<SpaceSavingSketch.Counter> counters) {
+        return counters.stream().map(SpaceSavingSketch.Counter::getItem).toList();
+    }
+
+    private static Map<String, SpaceSavingSketch.Counter> byItem(List<SpaceSavingSketch.Counter> counters) {
+        Map<String, SpaceSavingSketch.Counter> byItem = new HashMap<>();
+        counters.forEach(counter -> byItem.put(counter.getItem(), counter));
+        return byItem;
+    }
+}